@@ -46,6 +46,10 @@ CREATE TABLE Appointments (
         ON UPDATE CASCADE
 );
 
+-- Schedule lookups: a doctor's or a patient's appointments over a date range
+CREATE INDEX idx_appointments_doctor_date ON Appointments (DoctorID, AppointmentDate);
+CREATE INDEX idx_appointments_patient_date ON Appointments (PatientID, AppointmentDate);
+
 -- Doctor_Patient Table (Many-to-Many between Doctor and Patient)
 CREATE TABLE Doctor_Patient (
     DoctorID INT,
@@ -90,3 +94,18 @@ INSERT INTO Doctor_Patient (DoctorID, PatientID) VALUES
 (3, 3),
 (1, 2),  -- Doctor 1 also sees Patient 2
 (2, 3);  -- Doctor 2 also sees Patient 3
+
+-- ID block tables for the pooled ID generator (org.rma.model.PooledIdGenerator).
+-- MySQL has no sequences, so Hibernate keeps the next free ID of each entity in a
+-- one-row table and reserves blocks of IDs from it. Seed them past the existing rows.
+CREATE TABLE Patients_SEQ (next_val BIGINT);
+INSERT INTO Patients_SEQ SELECT COALESCE(MAX(PatientID), 0) + 1 FROM Patients;
+
+CREATE TABLE Doctors_SEQ (next_val BIGINT);
+INSERT INTO Doctors_SEQ SELECT COALESCE(MAX(DoctorID), 0) + 1 FROM Doctors;
+
+CREATE TABLE Offices_SEQ (next_val BIGINT);
+INSERT INTO Offices_SEQ SELECT COALESCE(MAX(OfficeID), 0) + 1 FROM Offices;
+
+CREATE TABLE Appointments_SEQ (next_val BIGINT);
+INSERT INTO Appointments_SEQ SELECT COALESCE(MAX(AppointmentID), 0) + 1 FROM Appointments;
@@ -0,0 +1,23 @@
+-- Migrates a database created by healthcare.sql before the switch from
+-- AUTO_INCREMENT IDs to the pooled ID generator (org.rma.model.PooledIdGenerator).
+--
+-- Run once with the application stopped. Each table holds the first ID of the next
+-- block Hibernate will hand out, so it is seeded with MAX(id) + 1. The AUTO_INCREMENT
+-- columns are left in place; Hibernate now supplies the IDs itself.
+USE HealthcareManagementTwoDB;
+
+CREATE TABLE IF NOT EXISTS Patients_SEQ (next_val BIGINT);
+DELETE FROM Patients_SEQ;
+INSERT INTO Patients_SEQ SELECT COALESCE(MAX(PatientID), 0) + 1 FROM Patients;
+
+CREATE TABLE IF NOT EXISTS Doctors_SEQ (next_val BIGINT);
+DELETE FROM Doctors_SEQ;
+INSERT INTO Doctors_SEQ SELECT COALESCE(MAX(DoctorID), 0) + 1 FROM Doctors;
+
+CREATE TABLE IF NOT EXISTS Offices_SEQ (next_val BIGINT);
+DELETE FROM Offices_SEQ;
+INSERT INTO Offices_SEQ SELECT COALESCE(MAX(OfficeID), 0) + 1 FROM Offices;
+
+CREATE TABLE IF NOT EXISTS Appointments_SEQ (next_val BIGINT);
+DELETE FROM Appointments_SEQ;
+INSERT INTO Appointments_SEQ SELECT COALESCE(MAX(AppointmentID), 0) + 1 FROM Appointments;
@@ -0,0 +1,10 @@
+-- Adds the composite indexes behind the doctor and patient date-range lookups
+-- (AppointmentRepositoryImpl.findByDoctorAndDateRange / findByPatientAndDateRange)
+-- to a database created by healthcare.sql before they were part of it.
+--
+-- The dates were already DATE columns; only the Java mapping moved from String to
+-- LocalDate, so no data changes are needed.
+USE HealthcareManagementTwoDB;
+
+CREATE INDEX idx_appointments_doctor_date ON Appointments (DoctorID, AppointmentDate);
+CREATE INDEX idx_appointments_patient_date ON Appointments (PatientID, AppointmentDate);
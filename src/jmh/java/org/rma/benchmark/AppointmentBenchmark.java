@@ -0,0 +1,83 @@
+package org.rma.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rma.model.Appointment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appointment operations against {@link BenchmarkData}. Throughput is in operations per
+ * millisecond; the sample-time mode gives the latency percentiles (p50, p90, p99, p99.9...) in
+ * milliseconds per operation.
+ *
+ * Reads and creates go through the services. Updates and deletes call the repositories, because
+ * the service methods print a message per call, which would be measured as well.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AppointmentBenchmark {
+
+    @Benchmark
+    public Appointment create(BenchmarkData data) {
+        Appointment appointment = BenchmarkData.appointment(data.randomDoctorId(), data.randomPatientId(),
+                BenchmarkData.randomDay());
+        data.appointmentService.createAppointment(appointment);
+        return appointment;
+    }
+
+    @Benchmark
+    public Appointment findById(BenchmarkData data) {
+        return data.appointmentService.getAppointmentById(data.generated.appointmentIds()[data.randomAppointment()]);
+    }
+
+    /** Every appointment with its patient and doctor; one operation per table scan. */
+    @Benchmark
+    public List<Appointment> findAll(BenchmarkData data) {
+        return data.appointmentService.getAllAppointments();
+    }
+
+    /** One 50-row keyset page at a random position, the way the list screens read. */
+    @Benchmark
+    public List<Appointment> findPage(BenchmarkData data) {
+        return data.appointmentService.getAppointmentPage(data.generated.appointmentIds()[data.randomAppointment()], 50);
+    }
+
+    /** Links a doctor to a patient and removes the link again. */
+    @Benchmark
+    public void linkUnlink(BenchmarkData data, Blackhole blackhole) {
+        int doctorId = data.randomDoctorId();
+        int patientId = data.randomPatientId();
+        blackhole.consume(data.doctorService.addPatientToDoctor(doctorId, BenchmarkData.patient(patientId)));
+        blackhole.consume(data.doctorService.removePatientFromDoctor(doctorId, BenchmarkData.patient(patientId)));
+    }
+
+    /** Moves an appointment to another day, keeping its doctor and patient. */
+    @Benchmark
+    public boolean update(BenchmarkData data) {
+        int i = data.randomAppointment();
+        Appointment appointment = BenchmarkData.appointment(data.generated.appointmentDoctorIds()[i],
+                data.generated.appointmentPatientIds()[i], BenchmarkData.randomDay());
+        appointment.setAppointmentId(data.generated.appointmentIds()[i]);
+        return data.appointmentRepository.updateWithLinks(appointment);
+    }
+
+    /** Deleting needs a row to delete, so each operation creates one first. */
+    @Benchmark
+    public boolean createAndDelete(BenchmarkData data) {
+        Appointment appointment = BenchmarkData.appointment(data.randomDoctorId(), data.randomPatientId(),
+                BenchmarkData.randomDay());
+        data.appointmentRepository.create(appointment);
+        return data.appointmentRepository.deleteWithLinks(appointment.getAppointmentId());
+    }
+}
@@ -0,0 +1,103 @@
+package org.rma.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rma.model.Appointment;
+import org.rma.model.Doctor;
+import org.rma.model.Patient;
+import org.rma.repository.AppointmentRepositoryImpl;
+import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.PatientRepositoryImpl;
+import org.rma.repository.SyntheticDataGenerator;
+import org.rma.repository.UnitOfWork;
+import org.rma.service.AppointmentService;
+import org.rma.service.DoctorScheduleIndex;
+import org.rma.service.DoctorService;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A fresh in-memory H2 database per trial holding {@code rows} appointments from
+ * {@link SyntheticDataGenerator}, at its default proportions. Only the generated IDs are kept on
+ * the heap, so the entities created here do not show up in the measurements.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    SessionFactory sessionFactory;
+    AppointmentRepositoryImpl appointmentRepository;
+    PatientRepositoryImpl patientRepository;
+    UnitOfWork unitOfWork;
+    AppointmentService appointmentService;
+    DoctorService doctorService;
+    SyntheticDataGenerator.Result generated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = new Configuration().configure("hibernate-benchmark.cfg.xml").buildSessionFactory();
+        appointmentRepository = new AppointmentRepositoryImpl(sessionFactory);
+        patientRepository = new PatientRepositoryImpl(sessionFactory);
+        unitOfWork = new UnitOfWork(sessionFactory);
+        DoctorRepositoryImpl doctorRepository = new DoctorRepositoryImpl(sessionFactory);
+        // No daily limit: generated data and random bookings may put a doctor twice on a day
+        appointmentService = new AppointmentService(appointmentRepository, doctorRepository,
+                patientRepository, new DoctorScheduleIndex(appointmentRepository));
+        doctorService = new DoctorService(doctorRepository);
+        generated = new SyntheticDataGenerator(sessionFactory, SEED).generate(SyntheticDataGenerator.Scale.ofAppointments(rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    int randomAppointment() {
+        return ThreadLocalRandom.current().nextInt(generated.appointmentIds().length);
+    }
+
+    int randomPatientId() {
+        return generated.patientIds()[ThreadLocalRandom.current().nextInt(generated.patientIds().length)];
+    }
+
+    int randomDoctorId() {
+        return generated.doctorIds()[ThreadLocalRandom.current().nextInt(generated.doctorIds().length)];
+    }
+
+    static LocalDate randomDay() {
+        return SyntheticDataGenerator.FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(3 * 365));
+    }
+
+    /** A detached appointment referring to the doctor and patient by ID only. */
+    static Appointment appointment(int doctorId, int patientId, LocalDate date) {
+        Appointment appointment = new Appointment();
+        appointment.setDoctor(doctor(doctorId));
+        appointment.setPatient(patient(patientId));
+        appointment.setAppointmentDate(date);
+        appointment.setNotes("Check-up");
+        return appointment;
+    }
+
+    static Doctor doctor(int doctorId) {
+        Doctor doctor = new Doctor();
+        doctor.setDoctorId(doctorId);
+        return doctor;
+    }
+
+    static Patient patient(int patientId) {
+        Patient patient = new Patient();
+        patient.setPatientId(patientId);
+        return patient;
+    }
+}
@@ -0,0 +1,98 @@
+package org.rma.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rma.model.Patient;
+import org.rma.repository.PatientRepositoryImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patient listings and flushes against {@link BenchmarkData}, in milliseconds per operation.
+ * Each listing reads every patient with its appointments and doctors, so the larger row counts
+ * are slow; pick one with e.g. {@code -p rows=100000}. Compare gc.alloc.rate.norm for the heap
+ * each listing allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PatientBenchmark {
+
+    /** One query join-fetching both collections, reading patients x appointments x doctors rows. */
+    @Benchmark
+    public List<Patient> findAllJoined(BenchmarkData data) {
+        return data.patientRepository.findAll(PatientRepositoryImpl.FetchMode.JOINED);
+    }
+
+    /** Patients, then their appointments and doctors with a query each. */
+    @Benchmark
+    public List<Patient> findAllMultiStep(BenchmarkData data) {
+        return data.patientRepository.findAll(PatientRepositoryImpl.FetchMode.MULTI_STEP);
+    }
+
+    /** {@link PatientRepositoryImpl#findAll()} as callers get it: a read-only session, no snapshots, no flush. */
+    @Benchmark
+    public List<Patient> findAllReadOnly(BenchmarkData data) {
+        return data.patientRepository.findAll();
+    }
+
+    /** Control for {@link #findAllReadOnly}: the same call joining a unit of work, so read-write and flushed on commit. */
+    @Benchmark
+    public List<Patient> findAllReadWrite(BenchmarkData data) {
+        return data.unitOfWork.execute(data.patientRepository::findAll);
+    }
+
+    /** An open session holding up to {@value #MANAGED} patients, rolled back at the end of the trial. */
+    @State(Scope.Thread)
+    public static class ManagedPatients {
+
+        static final int MANAGED = 5_000;
+
+        Session session;
+        List<Patient> patients;
+        int run;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) {
+            session = data.sessionFactory.openSession();
+            session.beginTransaction();
+            patients = session.createQuery("from Patient p order by p.patientId", Patient.class)
+                    .setMaxResults(MANAGED)
+                    .list();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.getTransaction().rollback();
+            session.close();
+        }
+    }
+
+    /**
+     * Changes 10 of the managed patients and flushes. With bytecode enhancement the flush visits
+     * only the patients that recorded a change, so its cost should not grow with the session.
+     */
+    @Benchmark
+    public void flushTenOfManyManaged(ManagedPatients managed) {
+        int run = managed.run++;
+        int step = Math.max(1, managed.patients.size() / 10);
+        for (int i = 0; i < managed.patients.size(); i += step) {
+            managed.patients.get(i).setPhoneNumber("555-" + run);
+        }
+        managed.session.flush();
+    }
+}
@@ -6,22 +6,30 @@ import org.rma.service.*;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;
 
 public class Main {
+    private static final int PAGE_SIZE = 20;
+
     public static void main(String[] args) {
         SessionFactory sessionFactory = new Configuration().configure("patient.cfg.xml").buildSessionFactory();
 
+        // Every public repository and service method is timed; see the Metrics menu
+        MetricsService metricsService = new MetricsService(sessionFactory);
         // Repositories
-        DoctorRepositoryImpl doctorRepository = new DoctorRepositoryImpl(sessionFactory);
-        PatientRepositoryImpl patientRepository = new PatientRepositoryImpl(sessionFactory);
-        AppointmentRepositoryImpl appointmentRepository = new AppointmentRepositoryImpl(sessionFactory);
-        OfficeRepositoryImpl officeRepository = new OfficeRepositoryImpl(sessionFactory);
+        DoctorRepositoryImpl doctorRepository = metricsService.create(DoctorRepositoryImpl.class, sessionFactory);
+        PatientRepositoryImpl patientRepository = metricsService.create(PatientRepositoryImpl.class, sessionFactory);
+        AppointmentRepositoryImpl appointmentRepository = metricsService.create(AppointmentRepositoryImpl.class, sessionFactory);
+        OfficeRepositoryImpl officeRepository = metricsService.create(OfficeRepositoryImpl.class, sessionFactory);
         // Services
-        DoctorService doctorService = new DoctorService(doctorRepository);
-        PatientService patientService = new PatientService(patientRepository);
-        AppointmentService appointmentService = new AppointmentService(appointmentRepository,doctorRepository,patientRepository);
-        OfficeService officeService = new OfficeService(officeRepository);
+        DoctorService doctorService = metricsService.create(DoctorService.class, doctorRepository);
+        PatientService patientService = metricsService.create(PatientService.class, patientRepository);
+        AppointmentService appointmentService = metricsService.create(AppointmentService.class,
+                appointmentRepository, doctorRepository, patientRepository);
+        OfficeService officeService = metricsService.create(OfficeService.class, officeRepository);
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory);
         // Main Menu
         Scanner scanner = new Scanner(System.in);
         boolean exit = false;
@@ -32,7 +40,8 @@ public class Main {
             System.out.println("2. Manage Doctors");
             System.out.println("3. Manage Appointments");
             System.out.println("4. Manage Offices");
-            System.out.println("5. Exit");
+            System.out.println("5. Show Metrics");
+            System.out.println("6. Exit");
 
             int choice = scanner.nextInt();
             scanner.nextLine();  // consume newline
@@ -45,12 +54,15 @@ public class Main {
                     manageDoctors(doctorService, scanner);
                     break;
                 case 3:
-                    manageAppointments(appointmentService, patientService, doctorService, scanner);
+                    manageAppointments(appointmentService, patientService, doctorService, unitOfWork, scanner);
                     break;
                 case 4:
                     manageOffices(officeService, doctorService,scanner);
                     break;
                 case 5:
+                    showMetrics(metricsService, scanner);
+                    break;
+                case 6:
                     exit = true;
                     System.out.println("Exiting Healthcare Management System.");
                     break;
@@ -81,8 +93,7 @@ public class Main {
                 newPatient.setFirstName(scanner.nextLine());
                 System.out.print("Enter last name: ");
                 newPatient.setLastName(scanner.nextLine());
-                System.out.print("Enter date of birth (YYYY-MM-DD): ");
-                newPatient.setDateOfBirth(scanner.nextLine());
+                newPatient.setDateOfBirth(readDate(scanner, "Enter date of birth (YYYY-MM-DD): "));
                 System.out.print("Enter email: ");
                 newPatient.setEmail(scanner.nextLine());
                 System.out.print("Enter phone number: ");
@@ -114,8 +125,7 @@ public class Main {
                     patient.setFirstName(scanner.nextLine());
                     System.out.print("Enter new last name: ");
                     patient.setLastName(scanner.nextLine());
-                    System.out.print("Enter new date of birth (YYYY-MM-DD): ");
-                    patient.setDateOfBirth(scanner.nextLine());
+                    patient.setDateOfBirth(readDate(scanner, "Enter new date of birth (YYYY-MM-DD): "));
                     System.out.print("Enter new email: ");
                     patient.setEmail(scanner.nextLine());
                     System.out.print("Enter new phone number: ");
@@ -134,9 +144,7 @@ public class Main {
                 break;
             case 5:
                 System.out.println("Listing All Patients:");
-                for (Patient p : patientService.getAllPatients()) {
-                    System.out.println(p);
-                }
+                printPages(patientService.pagePatientSummaries(PAGE_SIZE), scanner);
                 break;
             default:
                 System.out.println("Invalid choice.");
@@ -209,9 +217,7 @@ public class Main {
                 break;
             case 5:
                 System.out.println("Listing All Doctors:");
-                for (Doctor d : doctorService.getAllDoctors()) {
-                    System.out.println(d);
-                }
+                printPages(doctorService.pageDoctorSummaries(PAGE_SIZE), scanner);
                 break;
             default:
                 System.out.println("Invalid choice.");
@@ -222,6 +228,7 @@ public class Main {
             AppointmentService appointmentService,
             PatientService patientService,
             DoctorService doctorService,
+            UnitOfWork unitOfWork,
             Scanner scanner
     ) {
         System.out.println("\nManage Appointments");
@@ -230,6 +237,8 @@ public class Main {
         System.out.println("3. Update Appointment");
         System.out.println("4. Delete Appointment");
         System.out.println("5. List All Appointments");
+        System.out.println("6. Doctor Schedule");
+        System.out.println("7. Patient Appointments");
 
         int choice = scanner.nextInt();
         scanner.nextLine();  // Consume newline
@@ -251,21 +260,25 @@ public class Main {
                     break;
                 }
 
-                // Establish relationship using service methods
-                doctorService.addPatientToDoctor(doctorId, patient);
-                patientService.addDoctorToPatient(patientId, doctor);
-
                 Appointment newAppointment = new Appointment();
                 newAppointment.setPatient(patient);
                 newAppointment.setDoctor(doctor);
 
-                System.out.print("Enter appointment date (YYYY-MM-DD): ");
-                newAppointment.setAppointmentDate(scanner.nextLine());
+                newAppointment.setAppointmentDate(readDate(scanner, "Enter appointment date (YYYY-MM-DD): "));
                 System.out.print("Enter notes: ");
                 newAppointment.setNotes(scanner.nextLine());
 
-                appointmentService.createAppointment(newAppointment);
-                System.out.println("Appointment created successfully.");
+                // Save the appointment and link doctor and patient in one session and transaction
+                try {
+                    unitOfWork.run(() -> {
+                        appointmentService.createAppointment(newAppointment);
+                        // One link row serves both sides
+                        doctorService.addPatientToDoctor(doctor.getDoctorId(), patient);
+                    });
+                    System.out.println("Appointment created successfully.");
+                } catch (IllegalStateException e) {
+                    System.out.println(e.getMessage());
+                }
                 break;
 
             case 2:
@@ -290,10 +303,6 @@ public class Main {
                 scanner.nextLine();
                 appointment = appointmentService.getAppointmentById(appointmentId);
                 if (appointment != null) {
-                    // Store original relationships
-                    Doctor originalDoctor = appointment.getDoctor();
-                    Patient originalPatient = appointment.getPatient();
-
                     System.out.print("Enter new patient ID: ");
                     patientId = scanner.nextInt();
                     scanner.nextLine();
@@ -309,35 +318,19 @@ public class Main {
                         break;
                     }
 
-                    // Update relationships
-                    doctorService.addPatientToDoctor(doctorId, updatedPatient);
-                    patientService.addDoctorToPatient(patientId, updatedDoctor);
-
-                    // Remove old relationships if no other appointments exist
-                    if (!appointmentService.hasOtherAppointmentsBetween(
-                            originalDoctor.getDoctorId(),
-                            originalPatient.getPatientId()
-                    )) {
-                        doctorService.removePatientFromDoctor(
-                                originalDoctor.getDoctorId(),
-                                originalPatient
-                        );
-                        patientService.removeDoctorFromPatient(
-                                originalPatient.getPatientId(),
-                                originalDoctor
-                        );
-                    }
-
-                    // Update appointment details
+                    // Update appointment details; the service moves the doctor-patient link
                     appointment.setPatient(updatedPatient);
                     appointment.setDoctor(updatedDoctor);
-                    System.out.print("Enter new appointment date (YYYY-MM-DD): ");
-                    appointment.setAppointmentDate(scanner.nextLine());
+                    appointment.setAppointmentDate(readDate(scanner, "Enter new appointment date (YYYY-MM-DD): "));
                     System.out.print("Enter new notes: ");
                     appointment.setNotes(scanner.nextLine());
 
-                    appointmentService.updateAppointment(appointment);
-                    System.out.println("Appointment updated successfully.");
+                    try {
+                        appointmentService.updateAppointment(appointment);
+                        System.out.println("Appointment updated successfully.");
+                    } catch (IllegalStateException e) {
+                        System.out.println(e.getMessage());
+                    }
                 } else {
                     System.out.println("Appointment not found.");
                 }
@@ -347,38 +340,38 @@ public class Main {
                 System.out.print("Enter Appointment ID: ");
                 appointmentId = scanner.nextInt();
                 scanner.nextLine();
-                appointment = appointmentService.getAppointmentById(appointmentId);
-                if (appointment != null) {
-                    Doctor doctorToCheck = appointment.getDoctor();
-                    Patient patientToCheck = appointment.getPatient();
-
-                    // Delete the appointment first
-                    appointmentService.deleteAppointment(appointmentId);
-
-                    // Check if relationship should be removed
-                    if (!appointmentService.hasOtherAppointmentsBetween(
-                            doctorToCheck.getDoctorId(),
-                            patientToCheck.getPatientId()
-                    )) {
-                        doctorService.removePatientFromDoctor(
-                                doctorToCheck.getDoctorId(),
-                                patientToCheck
-                        );
-                        patientService.removeDoctorFromPatient(
-                                patientToCheck.getPatientId(),
-                                doctorToCheck
-                        );
-                    }
-                    System.out.println("Appointment deleted successfully.");
-                } else {
-                    System.out.println("Appointment not found.");
-                }
+                // Removes the doctor-patient link too if this was their last appointment
+                appointmentService.deleteAppointment(appointmentId);
                 break;
 
             case 5:
                 System.out.println("Listing All Appointments:");
-                for (Appointment a : appointmentService.getAllAppointments()) {
-                    System.out.println(a);
+                printPages(appointmentService.pageAppointmentRows(PAGE_SIZE), scanner);
+                break;
+
+            case 6:
+                System.out.print("Enter doctor ID: ");
+                doctorId = scanner.nextInt();
+                scanner.nextLine();
+                LocalDate from = readDate(scanner, "From (YYYY-MM-DD): ");
+                LocalDate to = readDate(scanner, "To (YYYY-MM-DD): ");
+                for (Appointment scheduled : appointmentService.getAppointmentsByDoctorAndDateRange(doctorId, from, to)) {
+                    System.out.println(scheduled.getAppointmentDate() + "  #" + scheduled.getAppointmentId()
+                            + "  " + (scheduled.getPatient() == null ? "-" : scheduled.getPatient().getFirstName() + " " + scheduled.getPatient().getLastName())
+                            + "  " + scheduled.getNotes());
+                }
+                break;
+
+            case 7:
+                System.out.print("Enter patient ID: ");
+                patientId = scanner.nextInt();
+                scanner.nextLine();
+                from = readDate(scanner, "From (YYYY-MM-DD): ");
+                to = readDate(scanner, "To (YYYY-MM-DD): ");
+                for (Appointment scheduled : appointmentService.getAppointmentsByPatientAndDateRange(patientId, from, to)) {
+                    System.out.println(scheduled.getAppointmentDate() + "  #" + scheduled.getAppointmentId()
+                            + "  " + (scheduled.getDoctor() == null ? "-" : "Dr. " + scheduled.getDoctor().getLastName())
+                            + "  " + scheduled.getNotes());
                 }
                 break;
 
@@ -468,12 +461,48 @@ public class Main {
                 break;
             case 5:
                 System.out.println("Listing All Offices:");
-                for (Office o : officeService.getAllOffices()) {
-                    System.out.println(o);
-                }
+                printPages(officeService.pageOfficeSummaries(PAGE_SIZE), scanner);
                 break;
             default:
                 System.out.println("Invalid choice.");
         }
     }
+
+    private static void showMetrics(MetricsService metricsService, Scanner scanner) {
+        System.out.println();
+        System.out.print(metricsService.getSnapshot().dump());
+        System.out.println("1. Clear Metrics");
+        System.out.println("2. Back");
+
+        int choice = scanner.nextInt();
+        scanner.nextLine();  // consume newline
+        if (choice == 1) {
+            metricsService.clearStatistics();
+            System.out.println("Metrics cleared.");
+        }
+    }
+
+    private static LocalDate readDate(Scanner scanner, String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            try {
+                return LocalDate.parse(scanner.nextLine().trim());
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date, use YYYY-MM-DD.");
+            }
+        }
+    }
+
+    private static void printPages(PageCursor<?> pages, Scanner scanner) {
+        while (pages.hasNext()) {
+            pages.next().forEach(System.out::println);
+            if (!pages.hasNext()) {
+                break;
+            }
+            System.out.print("Press Enter for the next page, or q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+        }
+    }
 }
\ No newline at end of file
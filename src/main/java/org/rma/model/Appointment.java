@@ -2,37 +2,50 @@ package org.rma.model;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.time.LocalDate;
 import java.util.Objects;
 
 @Entity
-@Table(name = "Appointments")
+@NamedEntityGraph(name = Appointment.WITH_PATIENT_AND_DOCTOR,
+        attributeNodes = {@NamedAttributeNode("patient"), @NamedAttributeNode("doctor")})
+@Table(name = "Appointments", indexes = {
+        @Index(name = "idx_appointments_doctor_date", columnList = "DoctorID, AppointmentDate"),
+        @Index(name = "idx_appointments_patient_date", columnList = "PatientID, AppointmentDate")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @ToString(exclude = {"patient", "doctor"})
 public class Appointment {
 
+    /** Fetch plan for listings: patient and doctor in the same query. */
+    public static final String WITH_PATIENT_AND_DOCTOR = "Appointment.withPatientAndDoctor";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "appointment_id")
+    @GenericGenerator(name = "appointment_id", strategy = "org.rma.model.PooledIdGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "Appointments_SEQ"))
     @Column(name = "AppointmentID")
     private int appointmentId;
 
     @Column(name = "AppointmentDate")
-    private String appointmentDate;
+    private LocalDate appointmentDate;
 
     @Column(name = "Notes")
     private String notes;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "PatientID")
     private Patient patient;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "DoctorID")
     private Doctor doctor;
 
@@ -0,0 +1,13 @@
+package org.rma.model;
+
+import java.time.LocalDate;
+
+/**
+ * One line of an appointment listing: the appointment with the names of its patient and doctor,
+ * read in one joined query without loading any entity. Patient and doctor fields are null when
+ * the appointment has none.
+ */
+public record AppointmentRow(int appointmentId, LocalDate appointmentDate, String notes,
+                             Integer patientId, String patientFirstName, String patientLastName,
+                             Integer doctorId, String doctorFirstName, String doctorLastName) {
+}
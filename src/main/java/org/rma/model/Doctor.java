@@ -1,6 +1,11 @@
 package org.rma.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -12,14 +17,17 @@ import java.util.Set;
 
 @Entity
 @Table(name = "Doctors")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "doctors")
 @Getter
 @Setter
 @NoArgsConstructor
-@ToString(exclude = { "patients", "appointments"})
+@ToString(exclude = { "patients", "appointments", "offices"})
 public class Doctor {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "doctor_id")
+    @GenericGenerator(name = "doctor_id", strategy = "org.rma.model.PooledIdGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "Doctors_SEQ"))
     @Column(name = "DoctorID")
     private int doctorId;
 
@@ -35,13 +43,19 @@ public class Doctor {
     @Column(name = "Email")
     private String email;
 
-    @OneToOne(mappedBy = "doctor", cascade = {CascadeType.PERSIST, CascadeType.MERGE})
-    private Office office;
+    // The inverse side of a one-to-one cannot be proxied, so it would be loaded with every doctor.
+    // Mapped as a lazy collection instead; the unique Offices.DoctorID keeps it to one office.
+    @OneToMany(mappedBy = "doctor", cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Set<Office> offices = new HashSet<>();
 
 
     @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Appointment> appointments = new HashSet<>();
 
+    // Not cached: a cached collection holds only patient IDs, and Patient is not cached, so a hit
+    // would load every patient with a select of its own. Readers join fetch it instead.
     @ManyToMany(cascade = {CascadeType.PERSIST}, fetch = FetchType.LAZY)
     @JoinTable(
             name = "Doctor_Patient",
@@ -50,6 +64,17 @@ public class Doctor {
     )
     private Set<Patient> patients = new HashSet<>();
 
+    public Office getOffice() {
+        return offices.isEmpty() ? null : offices.iterator().next();
+    }
+
+    public void setOffice(Office office) {
+        offices.clear();
+        if (office != null) {
+            offices.add(office);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
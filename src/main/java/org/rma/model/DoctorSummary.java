@@ -0,0 +1,5 @@
+package org.rma.model;
+
+/** The columns a doctor listing shows, read with a constructor expression instead of loading {@link Doctor}. */
+public record DoctorSummary(int doctorId, String firstName, String lastName, String specialty, String email) {
+}
@@ -3,6 +3,10 @@ package org.rma.model;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -12,6 +16,7 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "Offices")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "offices")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -19,7 +24,9 @@ import java.util.Objects;
 public class Office {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "office_id")
+    @GenericGenerator(name = "office_id", strategy = "org.rma.model.PooledIdGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "Offices_SEQ"))
     @Column(name = "OfficeID")
     private int officeId;
 
@@ -29,8 +36,9 @@ public class Office {
     @Column(name = "Phone")
     private String phone;
 
-    @OneToOne
-    @JoinColumn(name = "DoctorID", nullable = true)  // Allow DoctorID to be null
+    // Owning side of the doctor's one office; a unique many-to-one so Doctor can map it lazily
+    @ManyToOne
+    @JoinColumn(name = "DoctorID", nullable = true, unique = true)  // Allow DoctorID to be null
     private Doctor doctor;
 
 
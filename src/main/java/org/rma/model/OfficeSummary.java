@@ -0,0 +1,6 @@
+package org.rma.model;
+
+/** An office with the name of its doctor, if it has one; {@code doctorId} is null otherwise. */
+public record OfficeSummary(int officeId, String location, String phone, Integer doctorId,
+                            String doctorFirstName, String doctorLastName) {
+}
@@ -1,11 +1,14 @@
 package org.rma.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -19,7 +22,9 @@ import java.util.Set;
 public class Patient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "patient_id")
+    @GenericGenerator(name = "patient_id", strategy = "org.rma.model.PooledIdGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "Patients_SEQ"))
     @Column(name = "PatientID")
     private int patientId;
 
@@ -30,7 +35,7 @@ public class Patient {
     private String lastName;
 
     @Column(name = "DateOfBirth")
-    private String dateOfBirth;
+    private LocalDate dateOfBirth;
 
     @Column(name = "Email")
     private String email;
@@ -0,0 +1,8 @@
+package org.rma.model;
+
+import java.time.LocalDate;
+
+/** The columns a patient listing shows, read with a constructor expression instead of loading {@link Patient}. */
+public record PatientSummary(int patientId, String firstName, String lastName, LocalDate dateOfBirth,
+                             String email, String phoneNumber) {
+}
@@ -1,71 +1,335 @@
 package org.rma.repository;
 
+import org.hibernate.LockMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
 import org.rma.model.Appointment;
+import org.rma.model.AppointmentRow;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class AppointmentRepositoryImpl {
+    private static final int DEFAULT_FETCH_SIZE = 500;
+    private static final String SELECT_ROW =
+            "select new org.rma.model.AppointmentRow(a.appointmentId, a.appointmentDate, a.notes, " +
+            "p.patientId, p.firstName, p.lastName, d.doctorId, d.firstName, d.lastName) " +
+            "from Appointment a left join a.patient p left join a.doctor d";
+
     private final SessionFactory sessionFactory;
+    private final UnitOfWork unitOfWork;
+    private final int multiLoadBatchSize;
 
     public AppointmentRepositoryImpl(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        this.unitOfWork = new UnitOfWork(sessionFactory);
+        this.multiLoadBatchSize = MultiLoads.batchSize(sessionFactory);
     }
 
     public void create(Appointment appointment) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.persist(appointment);
-            transaction.commit();
-        }
+        unitOfWork.doInTransaction(session -> session.persist(appointment));
+    }
+
+    public void createAll(Collection<Appointment> appointments) {
+        int batchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        boolean joined = unitOfWork.isActive();
+        unitOfWork.doInTransaction(session -> {
+            int count = 0;
+            for (Appointment appointment : appointments) {
+                session.persist(appointment);
+                // Flush each full JDBC batch and drop it from the persistence context, unless the context is shared
+                if (batchSize > 0 && ++count % batchSize == 0) {
+                    session.flush();
+                    if (!joined) {
+                        session.clear();
+                    }
+                }
+            }
+        });
     }
 
     public Appointment findById(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            return session.get(Appointment.class, id);
-        }
+        return unitOfWork.inSession(session ->
+                session.byId(Appointment.class).with(withPatientAndDoctor(session), GraphSemantic.FETCH).load(id));
+    }
+
+    /** The appointments with the given IDs, each with its patient and doctor, like {@link #findById}. */
+    public MultiLoadResult<Appointment> findAllByIds(Collection<Integer> ids) {
+        return unitOfWork.inSession(session ->
+                MultiLoads.load(session.byMultipleIds(Appointment.class).with(withPatientAndDoctor(session), GraphSemantic.FETCH),
+                        ids, multiLoadBatchSize));
     }
 
     public List<Appointment> findAll() {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery("from Appointment", Appointment.class).list();
+        return unitOfWork.inSession(session ->
+                session.createQuery("from Appointment", Appointment.class)
+                        .applyFetchGraph(withPatientAndDoctor(session))
+                        .list());
+    }
+
+    public List<Appointment> findPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(
+                                "select a from Appointment a where a.appointmentId > :afterId order by a.appointmentId", Appointment.class)
+                        .applyFetchGraph(withPatientAndDoctor(session))
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
+
+    /**
+     * Appointment rows with patient and doctor names, in ID order: one joined query, and the
+     * records it builds are not managed, so nothing enters the persistence context.
+     */
+    public List<AppointmentRow> findAllRows() {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_ROW + " order by a.appointmentId", AppointmentRow.class).list());
+    }
+
+    public List<AppointmentRow> findRowPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_ROW + " where a.appointmentId > :afterId order by a.appointmentId", AppointmentRow.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
+
+    /**
+     * The doctor's appointments from {@code from} to {@code to} inclusive, in date order, with
+     * their patients and doctors. Served by the (DoctorID, AppointmentDate) index.
+     */
+    public List<Appointment> findByDoctorAndDateRange(int doctorId, LocalDate from, LocalDate to) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(
+                                "select a from Appointment a " +
+                                        "where a.doctor.doctorId = :doctorId and a.appointmentDate between :from and :to " +
+                                        "order by a.appointmentDate, a.appointmentId", Appointment.class)
+                        .applyFetchGraph(withPatientAndDoctor(session))
+                        .setParameter("doctorId", doctorId)
+                        .setParameter("from", from)
+                        .setParameter("to", to)
+                        .list());
+    }
+
+    /**
+     * The patient's appointments from {@code from} to {@code to} inclusive, in date order, with
+     * their patients and doctors. Served by the (PatientID, AppointmentDate) index.
+     */
+    public List<Appointment> findByPatientAndDateRange(int patientId, LocalDate from, LocalDate to) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(
+                                "select a from Appointment a " +
+                                        "where a.patient.patientId = :patientId and a.appointmentDate between :from and :to " +
+                                        "order by a.appointmentDate, a.appointmentId", Appointment.class)
+                        .applyFetchGraph(withPatientAndDoctor(session))
+                        .setParameter("patientId", patientId)
+                        .setParameter("from", from)
+                        .setParameter("to", to)
+                        .list());
+    }
+
+    /**
+     * ID and date of each of the doctor's dated appointments; read from the (DoctorID,
+     * AppointmentDate) index alone. Runs in a session of its own, even inside a {@link UnitOfWork},
+     * so the result includes every booking committed so far.
+     */
+    public List<Object[]> findIdsAndDatesByDoctor(int doctorId) {
+        return unitOfWork.inNewSession(session ->
+                session.createQuery(
+                                "select a.appointmentId, a.appointmentDate from Appointment a " +
+                                        "where a.doctor.doctorId = :doctorId and a.appointmentDate is not null", Object[].class)
+                        .setParameter("doctorId", doctorId)
+                        .list());
+    }
+
+    /**
+     * Locks the doctor's row until the current transaction ends, then returns the IDs of the
+     * doctor's appointments on {@code date}. Callers that check through here wait for one another
+     * per doctor, in this JVM or any other. The appointments are read with a locking read, so the
+     * result includes every booking committed before the lock was granted.
+     *
+     * @throws IllegalStateException if called outside a {@link UnitOfWork}, which would let the lock go at once
+     */
+    public List<Integer> lockDoctorAndFindAppointmentIds(int doctorId, LocalDate date) {
+        if (!unitOfWork.isActive()) {
+            throw new IllegalStateException("The doctor lock must be taken inside a unit of work.");
         }
+        return unitOfWork.inTransaction(session -> {
+            session.createQuery("select d.doctorId from Doctor d where d.doctorId = :doctorId", Integer.class)
+                    .setParameter("doctorId", doctorId)
+                    .setHibernateLockMode(LockMode.PESSIMISTIC_WRITE)
+                    .uniqueResult();
+            return session.createQuery("select a.appointmentId from Appointment a " +
+                                    "where a.doctor.doctorId = :doctorId and a.appointmentDate = :date", Integer.class)
+                    .setParameter("doctorId", doctorId)
+                    .setParameter("date", date)
+                    .setHibernateLockMode(LockMode.PESSIMISTIC_WRITE)
+                    .list();
+        });
     }
 
-    public void update(Appointment appointment) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.merge(appointment);
-            transaction.commit();
+    /**
+     * Streams every appointment with its patient and doctor through a forward-only cursor.
+     * Rows are fetched {@code hibernate.jdbc.fetch_size} at a time and the session is cleared
+     * after each such chunk, so memory use does not grow with the table. The stream holds an
+     * open session of its own, even inside a {@link UnitOfWork}, and must be closed, e.g. with
+     * try-with-resources.
+     */
+    public Stream<Appointment> streamAll() {
+        Session session = unitOfWork.openReadOnlySession();
+        try {
+            Integer configuredFetchSize = sessionFactory.getSessionFactoryOptions().getJdbcFetchSize();
+            int fetchSize = configuredFetchSize != null && configuredFetchSize > 0 ? configuredFetchSize : DEFAULT_FETCH_SIZE;
+            ScrollableResults<Appointment> results = PooledConnectionProvider.readOnly(() ->
+                    session.createQuery("select a from Appointment a", Appointment.class)
+                            .applyFetchGraph(withPatientAndDoctor(session))
+                            .setFetchSize(fetchSize)
+                            .scroll(ScrollMode.FORWARD_ONLY));
+
+            Spliterator<Appointment> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                private int count;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super Appointment> action) {
+                    if (!results.next()) {
+                        return false;
+                    }
+                    action.accept(results.get());
+                    if (++count % fetchSize == 0) {
+                        session.clear(); // Detach the chunk already handed out
+                    }
+                    return true;
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                results.close();
+                session.close();
+            });
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    public void streamAll(Consumer<Appointment> consumer) {
+        try (Stream<Appointment> appointments = streamAll()) {
+            appointments.forEach(consumer);
         }
     }
 
+    public void update(Appointment appointment) {
+        unitOfWork.doInTransaction(session -> session.merge(appointment));
+    }
+
+    /**
+     * Saves the appointment and moves its Doctor_Patient link in one transaction: the old
+     * pair's link is dropped if no other appointment still needs it and the new pair is linked.
+     * Uses at most four statements and never loads the doctors' or patients' collections.
+     * Returns false if the appointment does not exist.
+     */
+    public boolean updateWithLinks(Appointment appointment) {
+        return unitOfWork.inTransaction(session -> {
+            Object[] current = lockDoctorAndPatientIds(session, appointment.getAppointmentId());
+            if (current == null) {
+                return false;
+            }
+
+            session.createMutationQuery("update Appointment a set a.appointmentDate = :date, a.notes = :notes, " +
+                            "a.doctor = :doctor, a.patient = :patient where a.appointmentId = :id")
+                    .setParameter("date", appointment.getAppointmentDate())
+                    .setParameter("notes", appointment.getNotes())
+                    .setParameter("doctor", appointment.getDoctor())
+                    .setParameter("patient", appointment.getPatient())
+                    .setParameter("id", appointment.getAppointmentId())
+                    .executeUpdate();
+
+            Integer oldDoctorId = (Integer) current[0];
+            Integer oldPatientId = (Integer) current[1];
+            Integer newDoctorId = appointment.getDoctor() == null ? null : appointment.getDoctor().getDoctorId();
+            Integer newPatientId = appointment.getPatient() == null ? null : appointment.getPatient().getPatientId();
+            if (!Objects.equals(oldDoctorId, newDoctorId) || !Objects.equals(oldPatientId, newPatientId)) {
+                if (oldDoctorId != null && oldPatientId != null) {
+                    DoctorPatientLinks.unlinkIfNoAppointments(session, oldDoctorId, oldPatientId);
+                }
+                if (newDoctorId != null && newPatientId != null) {
+                    DoctorPatientLinks.link(session, newDoctorId, newPatientId);
+                }
+            }
+            return true;
+        });
+    }
+
     public void delete(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+        unitOfWork.doInTransaction(session -> {
             Appointment appointment = session.get(Appointment.class, id);
             if (appointment != null) {
                 session.remove(appointment);
             }
-            transaction.commit();
-        }
+        });
     }
 
-    public boolean hasOtherAppointmentsBetween(int doctorId, int patientId) {
-        try (Session session = sessionFactory.openSession()) {
-            String query = "SELECT COUNT(a) FROM Appointment a " +
-                    "WHERE a.doctor.doctorId = :doctorId " +
-                    "AND a.patient.patientId = :patientId";
-            Long count = session.createQuery(query, Long.class)
-                    .setParameter("doctorId", doctorId)
-                    .setParameter("patientId", patientId)
-                    .uniqueResult();
-            return count != null && count > 1;  // ✅ Fix: Check for more than 1 instead of just > 0
-        }
+    /**
+     * Deletes the appointment and, if it was the last one between its doctor and patient, their
+     * Doctor_Patient link, in one transaction of at most three statements. No entity or
+     * collection is loaded. Returns false if the appointment does not exist.
+     */
+    public boolean deleteWithLinks(int id) {
+        return unitOfWork.inTransaction(session -> {
+            Object[] current = lockDoctorAndPatientIds(session, id);
+            if (current == null) {
+                return false;
+            }
+
+            session.createMutationQuery("delete from Appointment a where a.appointmentId = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+
+            Integer doctorId = (Integer) current[0];
+            Integer patientId = (Integer) current[1];
+            if (doctorId != null && patientId != null) {
+                DoctorPatientLinks.unlinkIfNoAppointments(session, doctorId, patientId);
+            }
+            return true;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RootGraph<Appointment> withPatientAndDoctor(Session session) {
+        return (RootGraph<Appointment>) session.getEntityGraph(Appointment.WITH_PATIENT_AND_DOCTOR);
     }
 
+    /** Doctor and patient IDs of the appointment, with its row locked until the transaction ends; null if absent. */
+    private Object[] lockDoctorAndPatientIds(Session session, int appointmentId) {
+        return session.createQuery(
+                        "select a.doctor.doctorId, a.patient.patientId from Appointment a where a.appointmentId = :id", Object[].class)
+                .setParameter("id", appointmentId)
+                .setHibernateLockMode(LockMode.PESSIMISTIC_WRITE)
+                .uniqueResult();
+    }
 
+    /**
+     * True if the doctor and patient have more than one appointment, i.e. another one besides the
+     * one at hand. Reads at most two rows instead of counting all of the pair's appointments.
+     */
+    public boolean hasOtherAppointmentsBetween(int doctorId, int patientId) {
+        return unitOfWork.inSession(session ->
+                session.createQuery("select a.appointmentId from Appointment a " +
+                                "where a.doctor.doctorId = :doctorId and a.patient.patientId = :patientId", Integer.class)
+                        .setParameter("doctorId", doctorId)
+                        .setParameter("patientId", patientId)
+                        .setMaxResults(2)
+                        .list()
+                        .size() > 1);
+    }
 }
@@ -0,0 +1,80 @@
+package org.rma.repository;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection acquisition and usage times reported by the pool.
+ *
+ * Acquisition time is how long a caller waited for a connection, in nanoseconds; usage time is
+ * how long the connection was held before being returned, in milliseconds. Both are kept in
+ * HdrHistograms, which record from many threads without locking and answer percentile queries
+ * with three significant digits.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private static final long MAX_ACQUISITION_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long MAX_USAGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final Histogram acquisitionNanos = new ConcurrentHistogram(MAX_ACQUISITION_NANOS, 3);
+    private final Histogram usageMillis = new ConcurrentHistogram(MAX_USAGE_MILLIS, 3);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                connectionsCreated.increment();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitionNanos.recordValue(Math.min(elapsedAcquiredNanos, MAX_ACQUISITION_NANOS));
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.recordValue(Math.min(elapsedBorrowedMillis, MAX_USAGE_MILLIS));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /** A copy of the acquisition times recorded so far, in nanoseconds. */
+    public Histogram getAcquisitionNanos() {
+        return acquisitionNanos.copy();
+    }
+
+    /** A copy of the connection usage times recorded so far, in milliseconds. */
+    public Histogram getUsageMillis() {
+        return usageMillis.copy();
+    }
+
+    /** Callers that gave up after waiting connectionTimeout for a connection. */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    public void reset() {
+        acquisitionNanos.reset();
+        usageMillis.reset();
+        timeouts.reset();
+        connectionsCreated.reset();
+    }
+}
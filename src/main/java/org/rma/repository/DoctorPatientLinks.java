@@ -0,0 +1,125 @@
+package org.rma.repository;
+
+import org.hibernate.Session;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.SynchronizeableQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Maintains rows of the Doctor_Patient join table with single SQL statements, so adding or
+ * removing a link never loads either side's patients/doctors collection. Bulk variants handle
+ * up to {@value #ID_CHUNK_SIZE} IDs per statement. Every statement is idempotent: linking an
+ * existing pair or unlinking a missing one changes nothing.
+ *
+ * The statements run in the caller's session and transaction. They are synchronized on the
+ * Doctor_Patient table, so Hibernate flushes pending changes first.
+ */
+final class DoctorPatientLinks {
+
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final String LINK_TABLE = "Doctor_Patient";
+
+    private static final String LINK =
+            "INSERT INTO Doctor_Patient (DoctorID, PatientID) " +
+            "SELECT d.DoctorID, p.PatientID FROM Doctors d, Patients p " +
+            "WHERE d.DoctorID = :doctorId AND p.PatientID = :patientId " +
+            "AND NOT EXISTS (SELECT 1 FROM Doctor_Patient dp WHERE dp.DoctorID = :doctorId AND dp.PatientID = :patientId)";
+
+    private static final String LINK_PATIENTS =
+            "INSERT INTO Doctor_Patient (DoctorID, PatientID) " +
+            "SELECT d.DoctorID, p.PatientID FROM Doctors d, Patients p " +
+            "WHERE d.DoctorID = :doctorId AND p.PatientID IN (:patientIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM Doctor_Patient dp WHERE dp.DoctorID = d.DoctorID AND dp.PatientID = p.PatientID)";
+
+    private static final String LINK_DOCTORS =
+            "INSERT INTO Doctor_Patient (DoctorID, PatientID) " +
+            "SELECT d.DoctorID, p.PatientID FROM Doctors d, Patients p " +
+            "WHERE p.PatientID = :patientId AND d.DoctorID IN (:doctorIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM Doctor_Patient dp WHERE dp.DoctorID = d.DoctorID AND dp.PatientID = p.PatientID)";
+
+    private static final String UNLINK =
+            "DELETE FROM Doctor_Patient WHERE DoctorID = :doctorId AND PatientID = :patientId";
+
+    private static final String UNLINK_PATIENTS =
+            "DELETE FROM Doctor_Patient WHERE DoctorID = :doctorId AND PatientID IN (:patientIds)";
+
+    private static final String UNLINK_DOCTORS =
+            "DELETE FROM Doctor_Patient WHERE PatientID = :patientId AND DoctorID IN (:doctorIds)";
+
+    private static final String UNLINK_IF_NO_APPOINTMENTS =
+            "DELETE FROM Doctor_Patient WHERE DoctorID = :doctorId AND PatientID = :patientId " +
+            "AND NOT EXISTS (SELECT 1 FROM Appointments a WHERE a.DoctorID = :doctorId AND a.PatientID = :patientId)";
+
+    private DoctorPatientLinks() {
+    }
+
+    /** Inserts the link unless it already exists or either side is missing. Returns true if a row was added. */
+    static boolean link(Session session, int doctorId, int patientId) {
+        return execute(session, LINK, doctorId, patientId) > 0;
+    }
+
+    /** Inserts the missing links from the doctor to existing patients. Returns the number of rows added. */
+    static int linkPatients(Session session, int doctorId, Collection<Integer> patientIds) {
+        return executeInChunks(session, LINK_PATIENTS, "doctorId", doctorId, "patientIds", patientIds);
+    }
+
+    /** Inserts the missing links from existing doctors to the patient. Returns the number of rows added. */
+    static int linkDoctors(Session session, int patientId, Collection<Integer> doctorIds) {
+        return executeInChunks(session, LINK_DOCTORS, "patientId", patientId, "doctorIds", doctorIds);
+    }
+
+    /** Deletes the link, appointments or not. Returns true if a row was removed. */
+    static boolean unlink(Session session, int doctorId, int patientId) {
+        return execute(session, UNLINK, doctorId, patientId) > 0;
+    }
+
+    static int unlinkPatients(Session session, int doctorId, Collection<Integer> patientIds) {
+        return executeInChunks(session, UNLINK_PATIENTS, "doctorId", doctorId, "patientIds", patientIds);
+    }
+
+    static int unlinkDoctors(Session session, int patientId, Collection<Integer> doctorIds) {
+        return executeInChunks(session, UNLINK_DOCTORS, "patientId", patientId, "doctorIds", doctorIds);
+    }
+
+    /** Deletes the link if no appointment between the two remains. Returns true if a row was removed. */
+    static boolean unlinkIfNoAppointments(Session session, int doctorId, int patientId) {
+        return execute(session, UNLINK_IF_NO_APPOINTMENTS, doctorId, patientId) > 0;
+    }
+
+    private static int execute(Session session, String sql, int doctorId, int patientId) {
+        return linkStatement(session, sql)
+                .setParameter("doctorId", doctorId)
+                .setParameter("patientId", patientId)
+                .executeUpdate();
+    }
+
+    /** Runs {@code sql} with {@code idsParameter} bound to successive chunks of the distinct {@code ids}. */
+    private static int executeInChunks(Session session, String sql, String keyParameter, int key,
+                                       String idsParameter, Collection<Integer> ids) {
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int rows = 0;
+        for (int from = 0; from < distinctIds.size(); from += ID_CHUNK_SIZE) {
+            List<Integer> chunk = distinctIds.subList(from, Math.min(from + ID_CHUNK_SIZE, distinctIds.size()));
+            rows += linkStatement(session, sql)
+                    .setParameter(keyParameter, key)
+                    .setParameterList(idsParameter, chunk)
+                    .executeUpdate();
+        }
+        return rows;
+    }
+
+    /**
+     * A native DML statement synchronized on Doctor_Patient, so Hibernate flushes and invalidates
+     * only what touches that table rather than everything.
+     */
+    private static MutationQuery linkStatement(Session session, String sql) {
+        MutationQuery statement = session.createNativeMutationQuery(sql);
+        // MutationQuery does not expose query spaces in Hibernate 6.1; its native implementation takes them
+        ((SynchronizeableQuery) statement).addSynchronizedQuerySpace(LINK_TABLE);
+        return statement;
+    }
+}
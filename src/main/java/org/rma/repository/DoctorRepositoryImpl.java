@@ -1,55 +1,119 @@
 package org.rma.repository;
 
+import org.hibernate.Hibernate;
 import org.rma.model.Doctor;
-import org.hibernate.Session;
+import org.rma.model.DoctorSummary;
 import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
 import org.rma.model.Patient;
 
+import java.util.Collection;
 import java.util.List;
 
 public class DoctorRepositoryImpl{
 
+    private static final String SELECT_SUMMARY =
+            "select new org.rma.model.DoctorSummary(d.doctorId, d.firstName, d.lastName, d.specialty, d.email) from Doctor d";
+
     private final SessionFactory sessionFactory;
+    private final UnitOfWork unitOfWork;
+    private final int multiLoadBatchSize;
 
     public DoctorRepositoryImpl(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        this.unitOfWork = new UnitOfWork(sessionFactory);
+        this.multiLoadBatchSize = MultiLoads.batchSize(sessionFactory);
     }
 
     public void create(Doctor doctor) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.persist(doctor);
-            transaction.commit();
-        }
+        unitOfWork.doInTransaction(session -> session.persist(doctor));
+    }
+
+    public void createAll(Collection<Doctor> doctors) {
+        int batchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        boolean joined = unitOfWork.isActive();
+        unitOfWork.doInTransaction(session -> {
+            int count = 0;
+            for (Doctor doctor : doctors) {
+                session.persist(doctor);
+                // Flush each full JDBC batch and drop it from the persistence context, unless the context is shared
+                if (batchSize > 0 && ++count % batchSize == 0) {
+                    session.flush();
+                    if (!joined) {
+                        session.clear();
+                    }
+                }
+            }
+        });
     }
 
     public Doctor findById(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery(
-                            "SELECT d FROM Doctor d LEFT JOIN FETCH d.patients WHERE d.doctorId = :id", Doctor.class)
-                    .setParameter("id", id)
-                    .uniqueResult();
-        }
+        return unitOfWork.inSession(session ->
+                session.createQuery("SELECT d FROM Doctor d LEFT JOIN FETCH d.patients WHERE d.doctorId = :id", Doctor.class)
+                        .setParameter("id", id)
+                        .uniqueResult());
+    }
+
+    /**
+     * The doctors with the given IDs and their patients. Doctors are taken from the session or the
+     * second-level cache where present, and the rest are selected with their patients joined in.
+     * Cached doctors then get their patients with one join fetch per batch of IDs, rather than a
+     * select each.
+     */
+    public MultiLoadResult<Doctor> findAllByIds(Collection<Integer> ids) {
+        return unitOfWork.inSession(session -> {
+            RootGraph<Doctor> withPatients = session.createEntityGraph(Doctor.class);
+            withPatients.addAttributeNodes("patients");
+            MultiLoadResult<Doctor> result = MultiLoads.load(
+                    session.byMultipleIds(Doctor.class).with(withPatients, GraphSemantic.FETCH), ids, multiLoadBatchSize);
+            List<Integer> withoutPatients = result.found().stream()
+                    .filter(doctor -> !Hibernate.isInitialized(doctor.getPatients()))
+                    .map(Doctor::getDoctorId)
+                    .toList();
+            for (int from = 0; from < withoutPatients.size(); from += multiLoadBatchSize) {
+                session.createQuery("select distinct d from Doctor d left join fetch d.patients where d.doctorId in :ids", Doctor.class)
+                        .setParameter("ids", withoutPatients.subList(from, Math.min(from + multiLoadBatchSize, withoutPatients.size())))
+                        .list();
+            }
+            // As in PatientRepositoryImpl, enhanced entities pick up fetched collections on first access
+            result.found().forEach(doctor -> Hibernate.initialize(doctor.getPatients()));
+            return result;
+        });
     }
 
     public List<Doctor> findAll() {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery("from Doctor", Doctor.class).list();
-        }
+        return unitOfWork.inSession(session -> session.createQuery("from Doctor", Doctor.class).list());
+    }
+
+    public List<Doctor> findPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery("from Doctor d where d.doctorId > :afterId order by d.doctorId", Doctor.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
+
+    /** Doctor summaries for a listing, in ID order, read without loading any Doctor entity. */
+    public List<DoctorSummary> findAllSummaries() {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " order by d.doctorId", DoctorSummary.class).list());
+    }
+
+    public List<DoctorSummary> findSummaryPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " where d.doctorId > :afterId order by d.doctorId", DoctorSummary.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
     }
 
     public void update(Doctor doctor) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.merge(doctor);
-            transaction.commit();
-        }
+        unitOfWork.doInTransaction(session -> session.merge(doctor));
     }
 
     public void delete(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+        unitOfWork.doInTransaction(session -> {
             Doctor doctor = session.get(Doctor.class, id);
 
             if (doctor != null) {
@@ -61,33 +125,29 @@ public class DoctorRepositoryImpl{
 
                 session.remove(doctor);
             }
+        });
+    }
 
-            transaction.commit();
-        }
+
+    /**
+     * Links the patient to the doctor with a single insert, without loading the doctor's patients.
+     * Returns false if the link already existed or either side does not exist.
+     */
+    public boolean addPatientToDoctor(int doctorId, Patient patient) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.link(session, doctorId, patient.getPatientId()));
     }
 
+    /** Links every existing patient of {@code patientIds} to the doctor; returns the number of links added. */
+    public int addPatientsToDoctor(int doctorId, Collection<Integer> patientIds) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.linkPatients(session, doctorId, patientIds));
+    }
 
-    public void addPatientToDoctor(int doctorId, Patient patient) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            Doctor doctor = session.get(Doctor.class, doctorId);
-            if (doctor != null && !doctor.getPatients().contains(patient)) {
-                doctor.getPatients().add(patient);
-                session.merge(doctor);
-            }
-            transaction.commit();
-        }
+    /** Removes the link with a single delete. Returns false if there was none. */
+    public boolean removePatientFromDoctor(int doctorId, Patient patient) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.unlink(session, doctorId, patient.getPatientId()));
     }
 
-    public void removePatientFromDoctor(int doctorId, Patient patient) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction tx = session.beginTransaction();
-            Doctor doctor = session.get(Doctor.class, doctorId);
-            if (doctor != null && doctor.getPatients().contains(patient)) {
-                doctor.getPatients().remove(patient);
-                session.merge(doctor);
-            }
-            tx.commit();
-        }
+    public int removePatientsFromDoctor(int doctorId, Collection<Integer> patientIds) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.unlinkPatients(session, doctorId, patientIds));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package org.rma.repository;
+
+import java.util.List;
+
+/**
+ * Entities looked up by ID: {@code found} in the order the IDs were given, each ID once, and
+ * {@code missingIds} for the IDs that matched no row, in the same order.
+ */
+public record MultiLoadResult<T>(List<T> found, List<Integer> missingIds) {
+
+    public boolean isComplete() {
+        return missingIds.isEmpty();
+    }
+}
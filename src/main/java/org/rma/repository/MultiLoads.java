@@ -0,0 +1,60 @@
+package org.rma.repository;
+
+import org.hibernate.CacheMode;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Loads many entities by ID with Hibernate's multi-load: entities already in the session or in
+ * the second-level cache are taken from there, and the rest are selected with IN queries. The
+ * number of IDs per query is set with the {@value #BATCH_SIZE} configuration property
+ * ({@value #DEFAULT_BATCH_SIZE} by default).
+ */
+final class MultiLoads {
+
+    static final String BATCH_SIZE = "rma.multi_load.batch_size";
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private MultiLoads() {
+    }
+
+    static int batchSize(SessionFactory sessionFactory) {
+        ConfigurationService configuration = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConfigurationService.class);
+        return configuration.getSetting(BATCH_SIZE, StandardConverters.INTEGER, DEFAULT_BATCH_SIZE);
+    }
+
+    static <T> MultiLoadResult<T> load(MultiIdentifierLoadAccess<T> access, Collection<Integer> ids, int batchSize) {
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("IDs must not be null.");
+        }
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        // Multi-load only looks in the second-level cache when a cache mode is set explicitly
+        List<T> loaded = access.with(CacheMode.NORMAL)
+                .withBatchSize(batchSize)
+                .enableSessionCheck(true)
+                .enableOrderedReturn(true) // a null where an ID matched no row
+                .multiLoad(distinctIds);
+
+        List<T> found = new ArrayList<>(loaded.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (int i = 0; i < distinctIds.size(); i++) {
+            T entity = loaded.get(i);
+            if (entity == null) {
+                missingIds.add(distinctIds.get(i));
+            } else {
+                found.add(entity);
+            }
+        }
+        return new MultiLoadResult<>(found, missingIds);
+    }
+}
@@ -3,24 +3,28 @@ package org.rma.repository;
 
 import org.rma.model.Doctor;
 import org.rma.model.Office;
-import org.hibernate.Session;
+import org.rma.model.OfficeSummary;
 import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
 
+import java.util.Collection;
 import java.util.List;
 
 public class OfficeRepositoryImpl  {
 
-    private final SessionFactory sessionFactory;
+    private static final String SELECT_SUMMARY =
+            "select new org.rma.model.OfficeSummary(o.officeId, o.location, o.phone, d.doctorId, d.firstName, d.lastName) " +
+            "from Office o left join o.doctor d";
+
+    private final UnitOfWork unitOfWork;
+    private final int multiLoadBatchSize;
 
     public OfficeRepositoryImpl(SessionFactory sessionFactory) {
-        this.sessionFactory = sessionFactory;
+        this.unitOfWork = new UnitOfWork(sessionFactory);
+        this.multiLoadBatchSize = MultiLoads.batchSize(sessionFactory);
     }
 
     public void create(Office office) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-
+        unitOfWork.doInTransaction(session -> {
             // Ensure the doctor is managed
             Doctor managedDoctor = session.get(Doctor.class, office.getDoctor().getDoctorId());
             if (managedDoctor == null) {
@@ -30,28 +34,48 @@ public class OfficeRepositoryImpl  {
             office.setDoctor(managedDoctor); // Use the managed entity
 
             session.persist(office);
-            transaction.commit();
-        }
+        });
     }
 
 
 
     public Office findById(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            return session.get(Office.class, id);
-        }
+        return unitOfWork.inSession(session -> session.get(Office.class, id));
+    }
+
+    public MultiLoadResult<Office> findAllByIds(Collection<Integer> ids) {
+        return unitOfWork.inSession(session ->
+                MultiLoads.load(session.byMultipleIds(Office.class), ids, multiLoadBatchSize));
     }
 
     public List<Office> findAll() {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery("from Office", Office.class).list();
-        }
+        return unitOfWork.inSession(session -> session.createQuery("from Office", Office.class).list());
     }
 
-    public void updateOffice(Office office) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+    public List<Office> findPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery("from Office o where o.officeId > :afterId order by o.officeId", Office.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
 
+    /** Office summaries with their doctor's name, in ID order, read without loading any entity. */
+    public List<OfficeSummary> findAllSummaries() {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " order by o.officeId", OfficeSummary.class).list());
+    }
+
+    public List<OfficeSummary> findSummaryPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " where o.officeId > :afterId order by o.officeId", OfficeSummary.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
+
+    public void updateOffice(Office office) {
+        unitOfWork.doInTransaction(session -> {
             // Ensure the new doctor is managed (if changed)
             if (office.getDoctor() != null) {
                 Doctor managedDoctor = session.get(Doctor.class, office.getDoctor().getDoctorId());
@@ -59,16 +83,14 @@ public class OfficeRepositoryImpl  {
             }
 
             session.merge(office);
-            transaction.commit();
-        }
+        });
     }
 
 
 
 
     public void delete(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+        unitOfWork.doInTransaction(session -> {
             Office office = session.get(Office.class, id);
             if (office != null) {
                 if (office.getDoctor() != null) {
@@ -78,8 +100,7 @@ public class OfficeRepositoryImpl  {
 
                 session.remove(office);
             }
-            transaction.commit();
-        }
+        });
     }
 
-}
\ No newline at end of file
+}
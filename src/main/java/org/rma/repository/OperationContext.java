@@ -0,0 +1,38 @@
+package org.rma.repository;
+
+/**
+ * The business operation the current thread is running, e.g. "AppointmentService.updateAppointment".
+ * Set by the outermost timed call (see MetricsService) and read by
+ * {@link OperationStatementInspector} and the flight recorder events, so SQL and JDBC time can
+ * be traced back to the operation that caused it.
+ */
+public final class OperationContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private OperationContext() {
+    }
+
+    /** The current operation, or null outside one. */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes {@code operation} current unless one already is, and returns the operation that was
+     * current before. Pass the returned value to {@link #exit}.
+     */
+    public static String enter(String operation) {
+        String outer = CURRENT.get();
+        if (outer == null) {
+            CURRENT.set(operation);
+        }
+        return outer;
+    }
+
+    public static void exit(String outer) {
+        if (outer == null) {
+            CURRENT.remove();
+        }
+    }
+}
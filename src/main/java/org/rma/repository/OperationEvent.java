@@ -0,0 +1,38 @@
+package org.rma.repository;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call of a timed repository or service method (see MetricsService). Repository calls made
+ * by a service method carry the service method as their business operation.
+ */
+@Name("org.rma.Operation")
+@Label("Repository/Service Call")
+@Category({"Healthcare", "Operations"})
+@Description("A call of a repository or service method, with the entity IDs it was given and the rows it returned")
+@StackTrace(false)
+public class OperationEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Business Operation")
+    public String businessOperation;
+
+    @Label("Entity Type")
+    public String entityType;
+
+    @Label("IDs")
+    public String ids;
+
+    @Label("Rows")
+    @Description("Rows or entities returned or changed; -1 when the method returns nothing")
+    public long rows;
+
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,30 @@
+package org.rma.repository;
+
+import jdk.jfr.EventType;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Prefixes every SQL statement with a comment naming the current {@link OperationContext}
+ * operation, such as AppointmentService.updateAppointment, so slow query logs and database
+ * monitoring show which operation sent it. Statements outside an operation are left as they
+ * are. Enabled with hibernate.session_factory.statement_inspector.
+ *
+ * Tagging only happens while a Flight Recorder recording has {@link OperationEvent} enabled.
+ * A tag makes the same SQL from two operations two different statements, and the MySQL
+ * driver's prepared statement cache (prepStmtCacheSize in patient.cfg.xml) keeps one entry per
+ * distinct text, so tagging all the time would split it across operations.
+ */
+public class OperationStatementInspector implements StatementInspector {
+
+    private static final EventType OPERATION_EVENT = EventType.getEventType(OperationEvent.class);
+
+    @Override
+    public String inspect(String sql) {
+        String operation = OperationContext.current();
+        if (operation == null || !OPERATION_EVENT.isEnabled()) {
+            return sql;
+        }
+        // Operation names are Java identifiers and dots, which cannot end the comment early
+        return "/* " + operation + " */ " + sql;
+    }
+}
@@ -4,85 +4,191 @@ package org.rma.repository;
 
 import org.rma.model.Doctor;
 import org.rma.model.Patient;
+import org.rma.model.PatientSummary;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
 
+import java.util.Collection;
 import java.util.List;
 
 public class PatientRepositoryImpl {
 
+    /** How {@link #findAll(FetchMode)} loads each patient's appointments and doctors. */
+    public enum FetchMode {
+        /** One query join-fetching both collections; returns patients x appointments x doctors rows. */
+        JOINED,
+        /** Patients first, then appointments and doctors with one IN query each per chunk of patient IDs. */
+        MULTI_STEP
+    }
+
+    private static final String SELECT_SUMMARY =
+            "select new org.rma.model.PatientSummary(p.patientId, p.firstName, p.lastName, p.dateOfBirth, p.email, p.phoneNumber) " +
+            "from Patient p";
+    private static final int ID_CHUNK_SIZE = 1000;
+
     private final SessionFactory sessionFactory;
+    private final UnitOfWork unitOfWork;
+    private final int multiLoadBatchSize;
 
     public PatientRepositoryImpl(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        this.unitOfWork = new UnitOfWork(sessionFactory);
+        this.multiLoadBatchSize = MultiLoads.batchSize(sessionFactory);
     }
 
     public void create(Patient patient) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.persist(patient);
-            transaction.commit();
-        }
+        unitOfWork.doInTransaction(session -> session.persist(patient));
+    }
+
+    public void createAll(Collection<Patient> patients) {
+        int batchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        boolean joined = unitOfWork.isActive();
+        unitOfWork.doInTransaction(session -> {
+            int count = 0;
+            for (Patient patient : patients) {
+                session.persist(patient);
+                // Flush each full JDBC batch and drop it from the persistence context, unless the context is shared
+                if (batchSize > 0 && ++count % batchSize == 0) {
+                    session.flush();
+                    if (!joined) {
+                        session.clear();
+                    }
+                }
+            }
+        });
     }
 
     public Patient findById(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery(
-                            "SELECT p FROM Patient p LEFT JOIN FETCH p.doctors WHERE p.patientId = :id", Patient.class)
-                    .setParameter("id", id)
-                    .uniqueResult();
-        }
+        return unitOfWork.inSession(session ->
+                session.createQuery(
+                                "SELECT p FROM Patient p LEFT JOIN FETCH p.doctors WHERE p.patientId = :id", Patient.class)
+                        .setParameter("id", id)
+                        .uniqueResult());
     }
 
 
+    /** The patients with the given IDs, each with its doctors, like {@link #findById}. */
+    public MultiLoadResult<Patient> findAllByIds(Collection<Integer> ids) {
+        return unitOfWork.inSession(session -> {
+            RootGraph<Patient> withDoctors = session.createEntityGraph(Patient.class);
+            withDoctors.addAttributeNodes("doctors");
+            MultiLoadResult<Patient> result = MultiLoads.load(
+                    session.byMultipleIds(Patient.class).with(withDoctors, GraphSemantic.FETCH), ids, multiLoadBatchSize);
+            // Patients already in the session may not have their doctors yet
+            result.found().forEach(patient -> Hibernate.initialize(patient.getDoctors()));
+            return result;
+        });
+    }
+
     public List<Patient> findAll() {
-        try (Session session = sessionFactory.openSession()) {
-            return session.createQuery("select distinct p from Patient p left join fetch p.appointments left join fetch p.doctors", Patient.class).list();
+        return findAll(FetchMode.MULTI_STEP);
+    }
+
+    public List<Patient> findAll(FetchMode fetchMode) {
+        return unitOfWork.inSession(session -> {
+            if (fetchMode == FetchMode.JOINED) {
+                return session.createQuery("select distinct p from Patient p left join fetch p.appointments left join fetch p.doctors", Patient.class).list();
+            }
+            List<Patient> patients = session.createQuery("from Patient p order by p.patientId", Patient.class).list();
+            fetchAssociations(session, patients);
+            return patients;
+        });
+    }
+
+
+    /**
+     * Keyset page: the first {@code limit} patients with an ID above {@code afterId}, in ID order.
+     * Appointments and doctors are loaded with one extra query each for the whole page, since
+     * join-fetching collections would defeat the row limit.
+     */
+    public List<Patient> findPage(int afterId, int limit) {
+        return unitOfWork.inSession(session -> {
+            List<Patient> patients = session.createQuery(
+                            "select p from Patient p where p.patientId > :afterId order by p.patientId", Patient.class)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .list();
+            fetchAssociations(session, patients);
+            return patients;
+        });
+    }
+
+    /**
+     * Initializes the appointments and doctors of patients already loaded in {@code session}.
+     * Each collection gets its own query, so the rows returned are patients + appointments +
+     * links rather than their product; Hibernate attaches the results to the same instances.
+     */
+    private void fetchAssociations(Session session, List<Patient> patients) {
+        for (int from = 0; from < patients.size(); from += ID_CHUNK_SIZE) {
+            List<Integer> ids = patients.subList(from, Math.min(from + ID_CHUNK_SIZE, patients.size())).stream()
+                    .map(Patient::getPatientId)
+                    .toList();
+            session.createQuery("select distinct p from Patient p left join fetch p.appointments where p.patientId in :ids", Patient.class)
+                    .setParameter("ids", ids)
+                    .list();
+            session.createQuery("select distinct p from Patient p left join fetch p.doctors where p.patientId in :ids", Patient.class)
+                    .setParameter("ids", ids)
+                    .list();
         }
+        // Enhanced entities only pick up the fetched collections on first access; do it in the session
+        for (Patient patient : patients) {
+            Hibernate.initialize(patient.getAppointments());
+            Hibernate.initialize(patient.getDoctors());
+        }
+    }
+
+    /**
+     * Patient summaries for a listing, in ID order. Records are built straight from the selected
+     * columns, so nothing is added to the persistence context and no collection is touched.
+     */
+    public List<PatientSummary> findAllSummaries() {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " order by p.patientId", PatientSummary.class).list());
     }
 
+    public List<PatientSummary> findSummaryPage(int afterId, int limit) {
+        return unitOfWork.inSession(session ->
+                session.createQuery(SELECT_SUMMARY + " where p.patientId > :afterId order by p.patientId", PatientSummary.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .list());
+    }
 
     public void update(Patient patient) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            session.merge(patient);
-            transaction.commit();
-        }
+        unitOfWork.doInTransaction(session -> session.merge(patient));
     }
 
     public void delete(int id) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
+        unitOfWork.doInTransaction(session -> {
             Patient patient = session.get(Patient.class, id);
             if (patient != null) {
                 session.remove(patient);
             }
-            transaction.commit();
-        }
+        });
     }
 
-    public void addDoctorToPatient(int patientId, Doctor doctor) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            Patient patient = session.get(Patient.class, patientId);
-            if (patient != null && !patient.getDoctors().contains(doctor)) {
-                patient.getDoctors().add(doctor);
-                session.merge(patient);
-            }
-            transaction.commit();
-        }
+    /**
+     * Links the doctor to the patient with a single insert, without loading the patient's doctors.
+     * Returns false if the link already existed or either side does not exist.
+     */
+    public boolean addDoctorToPatient(int patientId, Doctor doctor) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.link(session, doctor.getDoctorId(), patientId));
     }
 
-    public void removeDoctorFromPatient(int patientId, Doctor doctor) {
-        try (Session session = sessionFactory.openSession()) {
-            Transaction tx = session.beginTransaction();
-            Patient patient = session.get(Patient.class, patientId);
-            if (patient != null && patient.getDoctors().contains(doctor)) {
-                patient.getDoctors().remove(doctor);
-                session.merge(patient);
-            }
-            tx.commit();
-        }
+    /** Links every existing doctor of {@code doctorIds} to the patient; returns the number of links added. */
+    public int addDoctorsToPatient(int patientId, Collection<Integer> doctorIds) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.linkDoctors(session, patientId, doctorIds));
+    }
+
+    /** Removes the link with a single delete. Returns false if there was none. */
+    public boolean removeDoctorFromPatient(int patientId, Doctor doctor) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.unlink(session, doctor.getDoctorId(), patientId));
+    }
+
+    public int removeDoctorsFromPatient(int patientId, Collection<Integer> doctorIds) {
+        return unitOfWork.inTransaction(session -> DoctorPatientLinks.unlinkDoctors(session, patientId, doctorIds));
     }
 }
\ No newline at end of file
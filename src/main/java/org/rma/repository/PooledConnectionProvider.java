@@ -0,0 +1,143 @@
+package org.rma.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.ConnectionProviderInitiator;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Hibernate connection provider backed by a HikariCP pool, with acquisition and usage times
+ * recorded in {@link ConnectionPoolMetrics}.
+ *
+ * The JDBC URL, driver and credentials come from the usual hibernate.connection.* settings, and
+ * any other hibernate.connection.* entry is passed to the driver. Pool settings use the HikariCP
+ * property names with a {@value #POOL_PREFIX} prefix, e.g. hibernate.hikari.maximumPoolSize or
+ * hibernate.hikari.dataSource.cachePrepStmts for a driver property.
+ */
+public class PooledConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+
+    public static final String POOL_PREFIX = "hibernate.hikari.";
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+    private HikariDataSource dataSource;
+
+    @Override
+    public void configure(Map<String, Object> configurationValues) {
+        Properties poolProperties = new Properties();
+        configurationValues.forEach((key, value) -> {
+            if (key.startsWith(POOL_PREFIX) && value != null) {
+                poolProperties.setProperty(key.substring(POOL_PREFIX.length()), value.toString());
+            }
+        });
+
+        HikariConfig config = new HikariConfig(poolProperties);
+        String driverClass = (String) configurationValues.get(AvailableSettings.DRIVER);
+        if (driverClass != null) {
+            config.setDriverClassName(driverClass);
+        }
+        config.setJdbcUrl((String) configurationValues.get(AvailableSettings.URL));
+        config.setUsername((String) configurationValues.get(AvailableSettings.USER));
+        config.setPassword((String) configurationValues.get(AvailableSettings.PASS));
+        // Same default as Hibernate's own provider: transactions are demarcated explicitly
+        config.setAutoCommit(ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, configurationValues, false));
+        ConnectionProviderInitiator.getConnectionProperties(configurationValues).forEach(
+                (key, value) -> config.addDataSourceProperty(key.toString(), value));
+        config.setMetricsTrackerFactory(metrics);
+
+        try {
+            dataSource = new HikariDataSource(config);
+        } catch (RuntimeException e) {
+            throw new HibernateException("Could not start the connection pool for " + config.getJdbcUrl(), e);
+        }
+    }
+
+    /**
+     * Runs {@code work} with every connection handed out to the calling thread marked read-only,
+     * so the database can skip write bookkeeping (on MySQL, a read-only InnoDB transaction). The
+     * pool resets the flag when the connection is returned. Connections already held are left
+     * as they are.
+     */
+    static <T> T readOnly(Supplier<T> work) {
+        if (READ_ONLY.get() != null) {
+            return work.get();
+        }
+        READ_ONLY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            READ_ONLY.remove();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        if (READ_ONLY.get() != null) {
+            try {
+                connection.setReadOnly(true);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    public ConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Live connection counts of the pool. */
+    public HikariPoolMXBean getPool() {
+        return dataSource.getHikariPoolMXBean();
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isInstance(this) || unwrapType.isAssignableFrom(HikariDataSource.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isInstance(this)) {
+            return (T) this;
+        }
+        if (unwrapType.isAssignableFrom(HikariDataSource.class)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
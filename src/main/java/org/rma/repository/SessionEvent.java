@@ -0,0 +1,22 @@
+package org.rma.repository;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A Session opened by {@link UnitOfWork}, from open to close. */
+@Name("org.rma.Session")
+@Label("Hibernate Session")
+@Category({"Healthcare", "Hibernate"})
+@Description("A Hibernate session opened by a repository call or unit of work")
+@StackTrace(false)
+class SessionEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Read-Only")
+    boolean readOnly;
+}
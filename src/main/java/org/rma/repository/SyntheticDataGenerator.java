@@ -0,0 +1,332 @@
+package org.rma.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.rma.model.Appointment;
+import org.rma.model.Doctor;
+import org.rma.model.Office;
+import org.rma.model.Patient;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Fills the database with a synthetic data set of any size, for load and scale testing.
+ *
+ * The data is derived from the seed alone, so the same seed and {@link Scale} always give the
+ * same data set. Patients choose doctors with a Zipf distribution, so a few doctors have many
+ * patients and most have few. About a third of the patients also see a second or third doctor.
+ * Appointments fall on weekdays spread over {@link Scale#years()} years from {@link #FIRST_DAY}.
+ * Each one is between a patient and one of that patient's doctors, and every such pair is
+ * linked in Doctor_Patient. Most doctors have an office, and a few offices have no doctor.
+ *
+ * Rows are written with JDBC batches on a StatelessSession, committing every
+ * {@value #COMMIT_ROWS} rows, so nothing is kept in a persistence context. IDs come from the
+ * entities' own generators, so Hibernate keeps allocating IDs after the generated ones. The
+ * second-level cache is cleared afterwards because the inserts bypass it.
+ */
+public class SyntheticDataGenerator {
+
+    /** Row counts of a data set. Appointments may be zero; the rest must be positive. */
+    public record Scale(int doctors, int patients, int appointments, int years) {
+
+        public Scale {
+            if (doctors <= 0 || patients <= 0 || appointments < 0 || years <= 0) {
+                throw new IllegalArgumentException("Invalid scale: " + doctors + " doctors, " + patients
+                        + " patients, " + appointments + " appointments over " + years + " years.");
+            }
+        }
+
+        /** One doctor per hundred appointments and one patient per ten, over three years. */
+        public static Scale ofAppointments(int appointments) {
+            return new Scale(Math.max(1, appointments / 100), Math.max(1, appointments / 10), appointments, 3);
+        }
+    }
+
+    /**
+     * The generated IDs, in generation order. The appointment arrays are parallel: appointment
+     * {@code i} is between doctor {@code appointmentDoctorIds[i]} and patient
+     * {@code appointmentPatientIds[i]}.
+     */
+    public record Result(int[] doctorIds, int[] patientIds, int[] officeIds, int links,
+                         int[] appointmentIds, int[] appointmentDoctorIds, int[] appointmentPatientIds) {
+    }
+
+    /** A Monday. */
+    public static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 6);
+
+    private static final int COMMIT_ROWS = 10_000;
+    private static final double DOCTOR_ZIPF_EXPONENT = 1.0;
+    private static final double PATIENT_ZIPF_EXPONENT = 0.6;
+    private static final double SHARED_PATIENT_RATE = 0.3;
+    private static final int MAX_DOCTORS_PER_PATIENT = 3;
+    private static final double PRIMARY_DOCTOR_RATE = 0.7;
+    private static final double OFFICE_RATE = 0.8;
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+            "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White"};
+    private static final String[] SPECIALTIES = {"General Practice", "General Practice", "General Practice",
+            "Pediatrics", "Cardiology", "Dermatology", "Orthopedics", "Neurology", "Psychiatry", "Oncology"};
+    private static final String[] NOTES = {"Routine check-up", "Follow-up visit", "Blood test results",
+            "Vaccination", "Prescription renewal", "Consultation", null};
+
+    private static final String INSERT_DOCTOR =
+            "INSERT INTO Doctors (DoctorID, FirstName, LastName, Specialty, Email) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_PATIENT =
+            "INSERT INTO Patients (PatientID, FirstName, LastName, DateOfBirth, Email, PhoneNumber) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_OFFICE =
+            "INSERT INTO Offices (OfficeID, Location, Phone, DoctorID) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_LINK =
+            "INSERT INTO Doctor_Patient (DoctorID, PatientID) VALUES (?, ?)";
+    private static final String INSERT_APPOINTMENT =
+            "INSERT INTO Appointments (AppointmentID, AppointmentDate, Notes, PatientID, DoctorID) VALUES (?, ?, ?, ?, ?)";
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement statement, int row) throws SQLException;
+    }
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final long seed;
+    private final int batchSize;
+
+    public SyntheticDataGenerator(SessionFactory sessionFactory, long seed) {
+        this.sessionFactory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        this.seed = seed;
+        int jdbcBatchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        this.batchSize = jdbcBatchSize > 0 ? jdbcBatchSize : 50;
+    }
+
+    /** Inserts a data set of the given scale. Existing rows are kept; IDs continue after them. */
+    public Result generate(Scale scale) {
+        Random random = new Random(seed);
+
+        // Doctors: popularity rank -> doctor, shuffled so the busiest doctors are not simply the first IDs
+        int[] doctorByRank = shuffledRange(scale.doctors(), random);
+        Zipf doctorPopularity = new Zipf(scale.doctors(), DOCTOR_ZIPF_EXPONENT);
+        boolean[] hasOffice = new boolean[scale.doctors()];
+        for (int i = 0; i < hasOffice.length; i++) {
+            hasOffice[i] = random.nextDouble() < OFFICE_RATE;
+        }
+
+        // Each patient's doctors (indexes into the doctors); the first is the primary doctor
+        int[][] patientDoctors = new int[scale.patients()][];
+        int[] birthDays = new int[scale.patients()];
+        int links = 0;
+        for (int p = 0; p < patientDoctors.length; p++) {
+            birthDays[p] = random.nextInt(90 * 365);
+            int count = 1;
+            while (count < Math.min(MAX_DOCTORS_PER_PATIENT, scale.doctors()) && random.nextDouble() < SHARED_PATIENT_RATE) {
+                count++;
+            }
+            int[] doctors = new int[count];
+            for (int i = 0; i < count; i++) {
+                int doctor;
+                do {
+                    doctor = doctorByRank[doctorPopularity.sample(random)];
+                } while (contains(doctors, i, doctor));
+                doctors[i] = doctor;
+            }
+            patientDoctors[p] = doctors;
+            links += count;
+        }
+
+        // Appointments: frequent patients come more often, mostly to their primary doctor
+        int[] patientByRank = shuffledRange(scale.patients(), random);
+        Zipf patientActivity = new Zipf(scale.patients(), PATIENT_ZIPF_EXPONENT);
+        int weeks = scale.years() * 52;
+        int[] appointmentPatients = new int[scale.appointments()];
+        int[] appointmentDoctors = new int[scale.appointments()];
+        LocalDate[] appointmentDates = new LocalDate[scale.appointments()];
+        for (int a = 0; a < appointmentPatients.length; a++) {
+            int patient = patientByRank[patientActivity.sample(random)];
+            int[] doctors = patientDoctors[patient];
+            appointmentPatients[a] = patient;
+            appointmentDoctors[a] = doctors.length == 1 || random.nextDouble() < PRIMARY_DOCTOR_RATE
+                    ? doctors[0] : doctors[1 + random.nextInt(doctors.length - 1)];
+            appointmentDates[a] = FIRST_DAY.plusWeeks(random.nextInt(weeks)).plusDays(random.nextInt(5));
+        }
+
+        int[] doctorIds = generateIds(Doctor.class, scale.doctors());
+        insert(INSERT_DOCTOR, doctorIds.length, (statement, d) -> {
+            statement.setInt(1, doctorIds[d]);
+            statement.setString(2, FIRST_NAMES[d % FIRST_NAMES.length]);
+            statement.setString(3, LAST_NAMES[d / FIRST_NAMES.length % LAST_NAMES.length]);
+            statement.setString(4, SPECIALTIES[d % SPECIALTIES.length]);
+            statement.setString(5, "doctor" + doctorIds[d] + "@example.com");
+        });
+
+        int assignedOffices = 0;
+        for (boolean office : hasOffice) {
+            assignedOffices += office ? 1 : 0;
+        }
+        int[] officeDoctors = new int[assignedOffices + Math.max(1, scale.doctors() / 10)];
+        Arrays.fill(officeDoctors, -1);
+        for (int d = 0, o = 0; d < hasOffice.length; d++) {
+            if (hasOffice[d]) {
+                officeDoctors[o++] = d;
+            }
+        }
+        int[] officeIds = generateIds(Office.class, officeDoctors.length);
+        insert(INSERT_OFFICE, officeIds.length, (statement, o) -> {
+            statement.setInt(1, officeIds[o]);
+            statement.setString(2, "Building " + (char) ('A' + o % 8) + ", Room " + (100 + o));
+            statement.setString(3, String.format("555-%07d", officeIds[o]));
+            if (officeDoctors[o] < 0) {
+                statement.setNull(4, Types.INTEGER);
+            } else {
+                statement.setInt(4, doctorIds[officeDoctors[o]]);
+            }
+        });
+
+        int[] patientIds = generateIds(Patient.class, scale.patients());
+        LocalDate oldestBirthDate = FIRST_DAY.minusYears(90);
+        insert(INSERT_PATIENT, patientIds.length, (statement, p) -> {
+            statement.setInt(1, patientIds[p]);
+            statement.setString(2, FIRST_NAMES[p % FIRST_NAMES.length]);
+            statement.setString(3, LAST_NAMES[p / FIRST_NAMES.length % LAST_NAMES.length]);
+            statement.setDate(4, Date.valueOf(oldestBirthDate.plusDays(birthDays[p])));
+            statement.setString(5, "patient" + patientIds[p] + "@example.com");
+            statement.setString(6, String.format("555-%07d", patientIds[p] % 10_000_000));
+        });
+
+        int[] linkDoctors = new int[links];
+        int[] linkPatients = new int[links];
+        for (int p = 0, l = 0; p < patientDoctors.length; p++) {
+            for (int doctor : patientDoctors[p]) {
+                linkDoctors[l] = doctor;
+                linkPatients[l++] = p;
+            }
+        }
+        insert(INSERT_LINK, links, (statement, l) -> {
+            statement.setInt(1, doctorIds[linkDoctors[l]]);
+            statement.setInt(2, patientIds[linkPatients[l]]);
+        });
+
+        int[] appointmentIds = generateIds(Appointment.class, scale.appointments());
+        int[] appointmentDoctorIds = new int[appointmentIds.length];
+        int[] appointmentPatientIds = new int[appointmentIds.length];
+        for (int a = 0; a < appointmentIds.length; a++) {
+            appointmentDoctorIds[a] = doctorIds[appointmentDoctors[a]];
+            appointmentPatientIds[a] = patientIds[appointmentPatients[a]];
+        }
+        insert(INSERT_APPOINTMENT, appointmentIds.length, (statement, a) -> {
+            statement.setInt(1, appointmentIds[a]);
+            statement.setDate(2, Date.valueOf(appointmentDates[a]));
+            statement.setString(3, NOTES[a % NOTES.length]);
+            statement.setInt(4, appointmentPatientIds[a]);
+            statement.setInt(5, appointmentDoctorIds[a]);
+        });
+
+        sessionFactory.getCache().evictAllRegions();
+        return new Result(doctorIds, patientIds, officeIds, links, appointmentIds, appointmentDoctorIds, appointmentPatientIds);
+    }
+
+    /** Takes {@code count} IDs from the entity's generator, which reserves them in blocks. */
+    private int[] generateIds(Class<?> entity, int count) {
+        IdentifierGenerator generator = sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(entity).getIdentifierGenerator();
+        int[] ids = new int[count];
+        inTransaction(session -> {
+            SharedSessionContractImplementor implementor = (SharedSessionContractImplementor) session;
+            for (int i = 0; i < count; i++) {
+                ids[i] = ((Number) generator.generate(implementor, null)).intValue();
+            }
+        });
+        return ids;
+    }
+
+    private void insert(String sql, int rows, RowBinder binder) {
+        for (int start = 0; start < rows; start += COMMIT_ROWS) {
+            int from = start;
+            int to = Math.min(start + COMMIT_ROWS, rows);
+            inTransaction(session -> session.doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int row = from; row < to; row++) {
+                        binder.bind(statement, row);
+                        statement.addBatch();
+                        if ((row - from + 1) % batchSize == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            }));
+        }
+    }
+
+    private void inTransaction(Consumer<StatelessSession> work) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                work.accept(session);
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static int[] shuffledRange(int size, Random random) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ranks 0 to n - 1, rank k drawn with probability proportional to 1 / (k + 1)^exponent. */
+    private static final class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
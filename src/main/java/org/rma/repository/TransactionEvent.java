@@ -0,0 +1,22 @@
+package org.rma.repository;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A transaction run by {@link UnitOfWork}, from begin to commit or rollback. */
+@Name("org.rma.Transaction")
+@Label("Hibernate Transaction")
+@Category({"Healthcare", "Hibernate"})
+@Description("A database transaction, including its commit or rollback")
+@StackTrace(false)
+class TransactionEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Committed")
+    boolean committed;
+}
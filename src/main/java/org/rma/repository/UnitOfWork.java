@@ -0,0 +1,182 @@
+package org.rma.repository;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs several repository calls in one Session and one transaction.
+ *
+ * While {@link #execute} runs, its session is bound to the current thread and every repository
+ * built on the same SessionFactory joins it instead of opening its own, so the calls share one
+ * persistence context and commit or roll back together. A unit of work started inside another
+ * one joins the outer one. Outside a unit of work each repository call still gets a session
+ * and transaction of its own.
+ *
+ * Sessions and transactions are reported to Java Flight Recorder as org.rma.Session and
+ * org.rma.Transaction events, tagged with the current {@link OperationContext} operation.
+ */
+public class UnitOfWork {
+
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+
+    private final SessionFactory sessionFactory;
+
+    public UnitOfWork(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /** Runs {@code work} in one transaction and returns its result; any exception rolls everything back. */
+    public <T> T execute(Supplier<T> work) {
+        return inTransaction(session -> work.get());
+    }
+
+    public void run(Runnable work) {
+        doInTransaction(session -> work.run());
+    }
+
+    /** True if the calling thread is inside a unit of work on this session factory. */
+    public boolean isActive() {
+        return current() != null;
+    }
+
+    /**
+     * Runs {@code action} once the current unit of work's transaction ends, with true if it
+     * committed. Lets state kept outside the database follow the transaction rather than the
+     * call that changed it.
+     *
+     * @throws IllegalStateException if no unit of work is active
+     */
+    public void afterCompletion(Consumer<Boolean> action) {
+        Session current = current();
+        if (current == null) {
+            throw new IllegalStateException("No unit of work is active.");
+        }
+        current.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == Status.STATUS_COMMITTED);
+            }
+        });
+    }
+
+    <T> T inTransaction(Function<Session, T> work) {
+        Session current = current();
+        if (current != null) {
+            try {
+                return work.apply(current);
+            } catch (RuntimeException e) {
+                // Let the caller decide, but make sure the outer unit cannot commit half of the work
+                current.getTransaction().markRollbackOnly();
+                throw e;
+            }
+        }
+
+        Session previous = CURRENT.get();
+        SessionEvent sessionEvent = new SessionEvent();
+        sessionEvent.begin();
+        try (Session session = sessionFactory.openSession()) {
+            TransactionEvent transactionEvent = new TransactionEvent();
+            transactionEvent.begin();
+            Transaction transaction = session.beginTransaction();
+            CURRENT.set(session);
+            try {
+                T result = work.apply(session);
+                if (transaction.getRollbackOnly()) {
+                    transaction.rollback();
+                    throw new IllegalStateException("Transaction rolled back because a nested call failed.");
+                }
+                transaction.commit();
+                transactionEvent.committed = true;
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                restore(previous);
+                if (transactionEvent.shouldCommit()) {
+                    transactionEvent.operation = OperationContext.current();
+                    transactionEvent.commit();
+                }
+            }
+        } finally {
+            commit(sessionEvent, false);
+        }
+    }
+
+    void doInTransaction(Consumer<Session> work) {
+        inTransaction(session -> {
+            work.accept(session);
+            return null;
+        });
+    }
+
+    /**
+     * Runs read-only work in the current unit of work's session, or in a short read-only session
+     * without a transaction. A read-only session keeps no snapshots for dirty checking, never
+     * flushes, and marks its JDBC connection read-only.
+     */
+    <T> T inSession(Function<Session, T> work) {
+        Session current = current();
+        if (current != null) {
+            return work.apply(current);
+        }
+        return inNewSession(work);
+    }
+
+    /**
+     * Runs read-only work in a short read-only session of its own, even inside a unit of work,
+     * so it sees what other transactions committed since the unit of work began.
+     */
+    <T> T inNewSession(Function<Session, T> work) {
+        SessionEvent event = new SessionEvent();
+        event.begin();
+        try (Session session = openReadOnlySession()) {
+            return PooledConnectionProvider.readOnly(() -> work.apply(session));
+        } finally {
+            commit(event, true);
+        }
+    }
+
+    Session openReadOnlySession() {
+        Session session = sessionFactory.openSession();
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        return session;
+    }
+
+    private static void commit(SessionEvent event, boolean readOnly) {
+        // Fields are only filled in while a recording wants the event
+        if (event.shouldCommit()) {
+            event.operation = OperationContext.current();
+            event.readOnly = readOnly;
+            event.commit();
+        }
+    }
+
+    private Session current() {
+        Session session = CURRENT.get();
+        return session != null && session.getSessionFactory() == sessionFactory ? session : null;
+    }
+
+    private static void restore(Session previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -1,112 +1,119 @@
 package org.rma.service;
 
 import org.rma.model.Appointment;
-import org.rma.model.Doctor;
-import org.rma.model.Patient;
+import org.rma.model.AppointmentRow;
 import org.rma.repository.AppointmentRepositoryImpl;
 import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.MultiLoadResult;
 import org.rma.repository.PatientRepositoryImpl;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class AppointmentService {
 
     private final AppointmentRepositoryImpl appointmentRepository;
     private final DoctorRepositoryImpl doctorRepository;
     private final PatientRepositoryImpl patientRepository;
+    private final DoctorScheduleIndex scheduleIndex;
 
     public AppointmentService(AppointmentRepositoryImpl appointmentRepository,DoctorRepositoryImpl doctorRepository,PatientRepositoryImpl patientRepository) {
+        this(appointmentRepository, doctorRepository, patientRepository, new DoctorScheduleIndex(appointmentRepository));
+    }
+
+    public AppointmentService(AppointmentRepositoryImpl appointmentRepository, DoctorRepositoryImpl doctorRepository,
+                              PatientRepositoryImpl patientRepository, DoctorScheduleIndex scheduleIndex) {
         this.appointmentRepository = appointmentRepository;
         this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
+        this.scheduleIndex = scheduleIndex;
     }
 
+    /** @throws IllegalStateException if the schedule index has a daily limit and the doctor's day is full */
     public void createAppointment(Appointment appointment) {
-        appointmentRepository.create(appointment);
+        scheduleIndex.book(appointment, () -> appointmentRepository.create(appointment));
+    }
+
+    /** Bulk import: not checked for double-booking; the affected doctors' schedules are reloaded on next use. */
+    public void createAppointments(Collection<Appointment> appointments) {
+        appointmentRepository.createAll(appointments);
+        appointments.stream()
+                .filter(a -> a.getDoctor() != null)
+                .map(a -> a.getDoctor().getDoctorId())
+                .distinct()
+                .forEach(scheduleIndex::forget);
+    }
+
+    public boolean isSlotAvailable(int doctorId, LocalDate date) {
+        return scheduleIndex.isAvailable(doctorId, date);
+    }
+
+    public LocalDate nextFreeSlot(int doctorId, LocalDate from) {
+        return scheduleIndex.nextFreeSlot(doctorId, from);
     }
 
     public Appointment getAppointmentById(int id) {
         return appointmentRepository.findById(id);
     }
 
+    public MultiLoadResult<Appointment> getAppointmentsByIds(Collection<Integer> ids) {
+        return appointmentRepository.findAllByIds(ids);
+    }
+
     public List<Appointment> getAllAppointments() {
         return appointmentRepository.findAll();
     }
 
+    public List<Appointment> getAppointmentPage(int afterId, int limit) {
+        return appointmentRepository.findPage(afterId, limit);
+    }
 
-    public void deleteAppointment(int id) {
-        Appointment appointment = appointmentRepository.findById(id);
+    public PageCursor<Appointment> pageAppointments(int pageSize) {
+        return new PageCursor<>(appointmentRepository::findPage, Appointment::getAppointmentId, pageSize);
+    }
+
+    public List<AppointmentRow> getAllAppointmentRows() {
+        return appointmentRepository.findAllRows();
+    }
+
+    public PageCursor<AppointmentRow> pageAppointmentRows(int pageSize) {
+        return new PageCursor<>(appointmentRepository::findRowPage, AppointmentRow::appointmentId, pageSize);
+    }
+
+    public List<Appointment> getAppointmentsByDoctorAndDateRange(int doctorId, LocalDate from, LocalDate to) {
+        return appointmentRepository.findByDoctorAndDateRange(doctorId, from, to);
+    }
 
-        if (appointment != null) {
-            Doctor doctor = doctorRepository.findById(appointment.getDoctor().getDoctorId()); // ✅ Fetch doctor eagerly
-            Patient patient = patientRepository.findById(appointment.getPatient().getPatientId()); // ✅ Fetch patient eagerly
+    public List<Appointment> getAppointmentsByPatientAndDateRange(int patientId, LocalDate from, LocalDate to) {
+        return appointmentRepository.findByPatientAndDateRange(patientId, from, to);
+    }
 
-            // Delete the appointment first
-            appointmentRepository.delete(id);
+    /** The returned stream keeps a session open until it is closed. */
+    public Stream<Appointment> streamAllAppointments() {
+        return appointmentRepository.streamAll();
+    }
 
-            // Check if this was the last appointment between the doctor and patient
-            boolean hasOtherAppointments = appointmentRepository.hasOtherAppointmentsBetween(doctor.getDoctorId(), patient.getPatientId());
+    public void streamAllAppointments(Consumer<Appointment> consumer) {
+        appointmentRepository.streamAll(consumer);
+    }
 
-            if (!hasOtherAppointments) {
-                // If no other appointments exist, remove the relationship
-                doctor.getPatients().remove(patient);
-                patient.getDoctors().remove(doctor);
-                doctorRepository.update(doctor);
-                patientRepository.update(patient);
-            }
 
+    public void deleteAppointment(int id) {
+        // One transaction: the appointment row plus the link if this was the pair's last appointment
+        if (scheduleIndex.release(id, () -> appointmentRepository.deleteWithLinks(id))) {
             System.out.println("Appointment deleted successfully.");
         } else {
             System.out.println("Appointment not found.");
         }
     }
 
+    /** @throws IllegalStateException if the schedule index has a daily limit and the new doctor's day is full */
     public void updateAppointment(Appointment appointment) {
-        Appointment existingAppointment = appointmentRepository.findById(appointment.getAppointmentId());
-
-        if (existingAppointment != null) {
-            Doctor oldDoctor = doctorRepository.findById(existingAppointment.getDoctor().getDoctorId()); // ✅ Fetch eagerly
-            Patient oldPatient = patientRepository.findById(existingAppointment.getPatient().getPatientId()); // ✅ Fetch eagerly
-            Doctor newDoctor = doctorRepository.findById(appointment.getDoctor().getDoctorId());
-            Patient newPatient = patientRepository.findById(appointment.getPatient().getPatientId());
-
-            if (!oldDoctor.equals(newDoctor)) {
-                // Check if old doctor-patient relationship should be removed
-                boolean hasOtherAppointments = appointmentRepository.hasOtherAppointmentsBetween(oldDoctor.getDoctorId(), oldPatient.getPatientId());
-
-                if (!hasOtherAppointments) {
-                    oldDoctor.getPatients().remove(oldPatient);
-                    oldPatient.getDoctors().remove(oldDoctor);
-                    doctorRepository.update(oldDoctor);
-                    patientRepository.update(oldPatient);
-                }
-
-                // Add the new doctor-patient relationship
-                newDoctor.getPatients().add(newPatient);
-                newPatient.getDoctors().add(newDoctor);
-                doctorRepository.update(newDoctor);
-                patientRepository.update(newPatient);
-            }
-
-            if (!oldPatient.equals(newPatient)) {
-                boolean hasOtherAppointments = appointmentRepository.hasOtherAppointmentsBetween(oldDoctor.getDoctorId(), oldPatient.getPatientId());
-
-                if (!hasOtherAppointments) {
-                    oldDoctor.getPatients().remove(oldPatient);
-                    oldPatient.getDoctors().remove(oldDoctor);
-                    doctorRepository.update(oldDoctor);
-                    patientRepository.update(oldPatient);
-                }
-
-                newDoctor.getPatients().add(newPatient);
-                newPatient.getDoctors().add(newDoctor);
-                doctorRepository.update(newDoctor);
-                patientRepository.update(newPatient);
-            }
-
-            // Update the appointment itself
-            appointmentRepository.update(appointment);
-        } else {
+        // One transaction: the appointment row plus targeted Doctor_Patient link changes
+        if (!scheduleIndex.reschedule(appointment, () -> appointmentRepository.updateWithLinks(appointment))) {
             System.out.println("Appointment not found.");
         }
     }
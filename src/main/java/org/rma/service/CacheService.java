@@ -0,0 +1,47 @@
+package org.rma.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hit/miss figures for the second-level cache regions, for sizing them in caffeine.conf.
+ * Requires hibernate.generate_statistics.
+ */
+public class CacheService {
+
+    public record RegionStatistics(String region, long hits, long misses, long puts) {
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+
+    public CacheService(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public List<RegionStatistics> getRegionStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<RegionStatistics> regions = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+            regions.add(new RegionStatistics(region, regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(), regionStatistics.getPutCount()));
+        }
+        return regions;
+    }
+
+    public void clearStatistics() {
+        sessionFactory.getStatistics().clear();
+    }
+
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+}
@@ -0,0 +1,54 @@
+package org.rma.service;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.HdrHistogram.Histogram;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.rma.repository.ConnectionPoolMetrics;
+import org.rma.repository.PooledConnectionProvider;
+
+/**
+ * Connection counts and wait times of the JDBC connection pool, for sizing it in the
+ * hibernate.hikari.* settings. Requires hibernate.connection.provider_class to be
+ * {@link PooledConnectionProvider}.
+ */
+public class ConnectionPoolService {
+
+    /** Times are in microseconds. */
+    public record PoolStatistics(int active, int idle, int total, int threadsAwaiting,
+                                 long acquisitions, long timeouts, double meanWaitMicros,
+                                 long p50WaitMicros, long p99WaitMicros, long maxWaitMicros) {
+    }
+
+    private final PooledConnectionProvider connectionProvider;
+
+    public ConnectionPoolService(SessionFactory sessionFactory) {
+        ConnectionProvider provider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider == null || !provider.isUnwrappableAs(PooledConnectionProvider.class)) {
+            throw new IllegalStateException("The session factory does not use " + PooledConnectionProvider.class.getName() + ".");
+        }
+        this.connectionProvider = provider.unwrap(PooledConnectionProvider.class);
+    }
+
+    public PoolStatistics getStatistics() {
+        HikariPoolMXBean pool = connectionProvider.getPool();
+        ConnectionPoolMetrics metrics = connectionProvider.getMetrics();
+        Histogram wait = metrics.getAcquisitionNanos();
+        return new PoolStatistics(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection(),
+                wait.getTotalCount(), metrics.getTimeouts(), wait.getMean() / 1_000,
+                wait.getValueAtPercentile(50) / 1_000, wait.getValueAtPercentile(99) / 1_000,
+                wait.getMaxValue() / 1_000);
+    }
+
+    /** The connection wait histogram, in nanoseconds, for percentiles not in {@link PoolStatistics}. */
+    public Histogram getWaitHistogram() {
+        return connectionProvider.getMetrics().getAcquisitionNanos();
+    }
+
+    public void clearStatistics() {
+        connectionProvider.getMetrics().reset();
+    }
+}
@@ -0,0 +1,334 @@
+package org.rma.service;
+
+import org.rma.model.Appointment;
+import org.rma.repository.AppointmentRepositoryImpl;
+import org.rma.repository.UnitOfWork;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Optional limit on the number of appointments a doctor takes per day, checked against an
+ * in-memory index of booked days instead of the database.
+ *
+ * Appointments carry a date but no time, so the limit is a number of appointments per day. It
+ * is off unless set ({@link #UNLIMITED}): every booking is then accepted, as before, and the
+ * index keeps nothing. With a limit, a doctor's bookings are loaded into a sorted map the first
+ * time the doctor is used, and each booking, availability query and suggestion is an O(log n)
+ * lookup under the doctor's lock stripe.
+ *
+ * A booking that fits reserves its slot in the index before it is saved; concurrent bookings
+ * count the reservation, so two of them never both take the last slot. Once the booking's
+ * transaction, or the caller's enclosing one, completes, the reservation becomes a booking if
+ * it committed and is dropped if it rolled back. Only when the index shows the day full is the
+ * database asked: the doctor's row is locked and the day's appointments are re-read, so a stale
+ * index (bookings deleted with their patient, or changed from another JVM) never refuses a free
+ * slot. Bookings added from another JVM are seen when the doctor is next loaded or found full;
+ * the index alone does not stop two JVMs from both taking a doctor's last slot.
+ */
+public class DoctorScheduleIndex {
+
+    /** No limit on appointments per doctor and day. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    private static final int STRIPES = 64;
+
+    private record Booking(int doctorId, LocalDate date) {
+    }
+
+    private final AppointmentRepositoryImpl appointmentRepository;
+    private final UnitOfWork unitOfWork;
+    private final int appointmentsPerDay;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    // The maps are only changed while holding the stripe of the doctor concerned
+    private final Map<Integer, NavigableMap<LocalDate, Set<Integer>>> schedules = new ConcurrentHashMap<>();
+    private final Map<Integer, Booking> bookings = new ConcurrentHashMap<>();
+    // Slots taken by bookings whose transaction has not completed yet
+    private final Map<Booking, Integer> reserved = new ConcurrentHashMap<>();
+
+    /** An index without a daily limit. */
+    public DoctorScheduleIndex(AppointmentRepositoryImpl appointmentRepository) {
+        this(appointmentRepository, null, UNLIMITED);
+    }
+
+    /** {@code unitOfWork} must be on the repository's session factory, so bookings join its transaction. */
+    public DoctorScheduleIndex(AppointmentRepositoryImpl appointmentRepository, UnitOfWork unitOfWork, int appointmentsPerDay) {
+        if (appointmentsPerDay <= 0) {
+            throw new IllegalArgumentException("Appointments per day must be positive: " + appointmentsPerDay);
+        }
+        if (unitOfWork == null && appointmentsPerDay != UNLIMITED) {
+            throw new IllegalArgumentException("A daily limit needs a unit of work to check it in.");
+        }
+        this.appointmentRepository = appointmentRepository;
+        this.unitOfWork = unitOfWork;
+        this.appointmentsPerDay = appointmentsPerDay;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isAvailable(int doctorId, LocalDate date) {
+        if (!isLimited()) {
+            return true;
+        }
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            return hasRoom(schedule(doctorId), new Booking(doctorId, date), null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The first day on or after {@code from} with a free slot for the doctor. */
+    public LocalDate nextFreeSlot(int doctorId, LocalDate from) {
+        if (!isLimited()) {
+            return from;
+        }
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            NavigableMap<LocalDate, Set<Integer>> schedule = schedule(doctorId);
+            LocalDate day = from;
+            while (!hasRoom(schedule, new Booking(doctorId, day), null)) {
+                day = day.plusDays(1);
+            }
+            return day;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the appointment's slot and runs {@code persist} in one transaction, and turns the
+     * reservation into a booking once it commits. Appointments without a doctor or date are
+     * persisted unchecked.
+     *
+     * @throws IllegalStateException if the doctor has no free slot that day
+     */
+    public void book(Appointment appointment, Runnable persist) {
+        Integer doctorId = doctorIdOf(appointment);
+        LocalDate date = appointment.getAppointmentDate();
+        if (!isLimited() || doctorId == null || date == null) {
+            persist.run();
+            return;
+        }
+        Booking booking = new Booking(doctorId, date);
+        unitOfWork.run(() -> {
+            reserve(booking, null);
+            unitOfWork.afterCompletion(committed -> settle(appointment.getAppointmentId(), booking, true, committed));
+            persist.run();
+        });
+    }
+
+    /**
+     * Reserves the appointment's new slot and runs {@code update} in one transaction, and moves
+     * the booking once it commits. Returns the result of {@code update}.
+     *
+     * @throws IllegalStateException if the new doctor has no free slot that day
+     */
+    public boolean reschedule(Appointment appointment, BooleanSupplier update) {
+        Integer doctorId = doctorIdOf(appointment);
+        LocalDate date = appointment.getAppointmentDate();
+        if (!isLimited()) {
+            return update.getAsBoolean();
+        }
+        int appointmentId = appointment.getAppointmentId();
+        Booking booking = doctorId == null || date == null ? null : new Booking(doctorId, date);
+        return unitOfWork.execute(() -> {
+            AtomicBoolean updated = new AtomicBoolean();
+            if (booking != null) {
+                reserve(booking, appointmentId);
+            }
+            unitOfWork.afterCompletion(committed -> settle(appointmentId, booking, booking != null, committed && updated.get()));
+            updated.set(update.getAsBoolean());
+            return updated.get();
+        });
+    }
+
+    /** Runs {@code delete} and frees the appointment's slot once it commits. Returns the result of {@code delete}. */
+    public boolean release(int appointmentId, BooleanSupplier delete) {
+        if (!isLimited()) {
+            return delete.getAsBoolean();
+        }
+        return unitOfWork.execute(() -> {
+            boolean deleted = delete.getAsBoolean();
+            if (deleted) {
+                unitOfWork.afterCompletion(committed -> settle(appointmentId, null, false, committed));
+            }
+            return deleted;
+        });
+    }
+
+    /** Drops the doctor's bookings; they are reloaded from the database on next use. Reservations are kept. */
+    public void forget(int doctorId) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            NavigableMap<LocalDate, Set<Integer>> schedule = schedules.remove(doctorId);
+            if (schedule != null) {
+                schedule.values().forEach(ids -> ids.forEach(bookings::remove));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isLimited() {
+        return appointmentsPerDay != UNLIMITED;
+    }
+
+    /**
+     * Takes a slot for {@code booking} until {@link #settle}, counting {@code ignoredAppointmentId}
+     * (the appointment being moved) as free. The index decides; the database is only asked, under
+     * the doctor's row lock, when the index shows the day full.
+     */
+    private void reserve(Booking booking, Integer ignoredAppointmentId) {
+        ReentrantLock lock = lockFor(booking.doctorId());
+        Set<Integer> indexed;
+        lock.lock();
+        try {
+            if (tryReserve(schedule(booking.doctorId()), booking, ignoredAppointmentId)) {
+                return;
+            }
+            indexed = Set.copyOf(schedule(booking.doctorId()).getOrDefault(booking.date(), Set.of()));
+        } finally {
+            // Never wait for the row lock while holding the stripe: the row lock is held until commit
+            lock.unlock();
+        }
+        List<Integer> stored = appointmentRepository.lockDoctorAndFindAppointmentIds(booking.doctorId(), booking.date());
+        lock.lock();
+        try {
+            NavigableMap<LocalDate, Set<Integer>> schedule = schedule(booking.doctorId());
+            refresh(schedule, booking, stored, indexed);
+            if (!tryReserve(schedule, booking, ignoredAppointmentId)) {
+                throw new IllegalStateException("Doctor " + booking.doctorId() + " has no free slot on " + booking.date()
+                        + "; the next free day is " + nextFreeSlot(booking.doctorId(), booking.date().plusDays(1)) + ".");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds the doctor's stripe. */
+    private boolean tryReserve(NavigableMap<LocalDate, Set<Integer>> schedule, Booking booking, Integer ignoredAppointmentId) {
+        if (!hasRoom(schedule, booking, ignoredAppointmentId)) {
+            return false;
+        }
+        reserved.merge(booking, 1, Integer::sum);
+        return true;
+    }
+
+    /**
+     * Replaces the indexed day with the {@code stored} appointments, keeping the changes the
+     * index recorded since {@code indexed} was copied; those committed after the database read.
+     * Caller holds the doctor's stripe.
+     */
+    private void refresh(NavigableMap<LocalDate, Set<Integer>> schedule, Booking booking,
+                         List<Integer> stored, Set<Integer> indexed) {
+        Set<Integer> current = schedule.getOrDefault(booking.date(), Set.of());
+        Set<Integer> refreshed = new HashSet<>(stored);
+        current.stream().filter(id -> !indexed.contains(id)).forEach(refreshed::add);
+        indexed.stream().filter(id -> !current.contains(id)).forEach(refreshed::remove);
+        current.stream().filter(id -> !refreshed.contains(id)).forEach(id -> bookings.remove(id, booking));
+        refreshed.forEach(id -> bookings.put(id, booking));
+        if (refreshed.isEmpty()) {
+            schedule.remove(booking.date());
+        } else {
+            schedule.put(booking.date(), refreshed);
+        }
+    }
+
+    /** Whether the day has a slot left after its bookings and reservations. Caller holds the doctor's stripe. */
+    private boolean hasRoom(NavigableMap<LocalDate, Set<Integer>> schedule, Booking booking, Integer ignoredAppointmentId) {
+        Set<Integer> booked = schedule.getOrDefault(booking.date(), Set.of());
+        int taken = booked.size() - (ignoredAppointmentId != null && booked.contains(ignoredAppointmentId) ? 1 : 0)
+                + reserved.getOrDefault(booking, 0);
+        return taken < appointmentsPerDay;
+    }
+
+    /** The doctor's bookings, loaded on first use. Caller holds the doctor's stripe. */
+    private NavigableMap<LocalDate, Set<Integer>> schedule(int doctorId) {
+        NavigableMap<LocalDate, Set<Integer>> schedule = schedules.get(doctorId);
+        if (schedule == null) {
+            schedule = new TreeMap<>();
+            for (Object[] row : appointmentRepository.findIdsAndDatesByDoctor(doctorId)) {
+                int appointmentId = (Integer) row[0];
+                LocalDate date = (LocalDate) row[1];
+                schedule.computeIfAbsent(date, d -> new HashSet<>()).add(appointmentId);
+                bookings.put(appointmentId, new Booking(doctorId, date));
+            }
+            schedules.put(doctorId, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Ends the reservation of {@code booking} if {@code wasReserved}, and records a committed
+     * change: {@code booking} (null for none) is added and the appointment's old booking, if
+     * indexed, is dropped. The booking is added in the step that ends its reservation, so its slot
+     * never looks free in between. Doctors not loaded are left alone; they are read from the
+     * database, change included, when next used.
+     */
+    private void settle(int appointmentId, Booking booking, boolean wasReserved, boolean committed) {
+        Booking previous = bookings.get(appointmentId);
+        if (booking != null) {
+            ReentrantLock lock = lockFor(booking.doctorId());
+            lock.lock();
+            try {
+                if (wasReserved) {
+                    reserved.computeIfPresent(booking, (b, count) -> count == 1 ? null : count - 1);
+                }
+                NavigableMap<LocalDate, Set<Integer>> schedule = schedules.get(booking.doctorId());
+                if (committed && schedule != null) {
+                    schedule.computeIfAbsent(booking.date(), d -> new HashSet<>()).add(appointmentId);
+                    bookings.put(appointmentId, booking);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (committed && previous != null && !previous.equals(booking)) {
+            ReentrantLock lock = lockFor(previous.doctorId());
+            lock.lock();
+            try {
+                remove(appointmentId, previous);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void remove(int appointmentId, Booking booking) {
+        NavigableMap<LocalDate, Set<Integer>> schedule = schedules.get(booking.doctorId());
+        if (schedule != null) {
+            Set<Integer> booked = schedule.get(booking.date());
+            if (booked != null && booked.remove(appointmentId) && booked.isEmpty()) {
+                schedule.remove(booking.date());
+            }
+        }
+        bookings.remove(appointmentId, booking);
+    }
+
+    private ReentrantLock lockFor(int doctorId) {
+        return locks[stripe(doctorId)];
+    }
+
+    private static int stripe(int doctorId) {
+        // Spread consecutive IDs over the stripes
+        return Math.floorMod(doctorId * 0x9E3779B9, STRIPES);
+    }
+
+    private static Integer doctorIdOf(Appointment appointment) {
+        return appointment.getDoctor() == null ? null : appointment.getDoctor().getDoctorId();
+    }
+}
@@ -2,9 +2,12 @@ package org.rma.service;
 
 
 import org.rma.model.Doctor;
+import org.rma.model.DoctorSummary;
 import org.rma.model.Patient;
 import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.MultiLoadResult;
 
+import java.util.Collection;
 import java.util.List;
 
 public class DoctorService {
@@ -19,14 +22,38 @@ public class DoctorService {
         doctorRepository.create(doctor);
     }
 
+    public void createDoctors(Collection<Doctor> doctors) {
+        doctorRepository.createAll(doctors);
+    }
+
     public Doctor getDoctorById(int id) {
         return doctorRepository.findById(id);
     }
 
+    public MultiLoadResult<Doctor> getDoctorsByIds(Collection<Integer> ids) {
+        return doctorRepository.findAllByIds(ids);
+    }
+
     public List<Doctor> getAllDoctors() {
         return doctorRepository.findAll();
     }
 
+    public List<Doctor> getDoctorPage(int afterId, int limit) {
+        return doctorRepository.findPage(afterId, limit);
+    }
+
+    public PageCursor<Doctor> pageDoctors(int pageSize) {
+        return new PageCursor<>(doctorRepository::findPage, Doctor::getDoctorId, pageSize);
+    }
+
+    public List<DoctorSummary> getAllDoctorSummaries() {
+        return doctorRepository.findAllSummaries();
+    }
+
+    public PageCursor<DoctorSummary> pageDoctorSummaries(int pageSize) {
+        return new PageCursor<>(doctorRepository::findSummaryPage, DoctorSummary::doctorId, pageSize);
+    }
+
     public void updateDoctor(Doctor doctor) {
         doctorRepository.update(doctor);
     }
@@ -35,12 +62,20 @@ public class DoctorService {
         doctorRepository.delete(id);
     }
 
-    public void addPatientToDoctor(int doctorId, Patient patient) {
-        doctorRepository.addPatientToDoctor(doctorId, patient);
+    public boolean addPatientToDoctor(int doctorId, Patient patient) {
+        return doctorRepository.addPatientToDoctor(doctorId, patient);
+    }
+
+    public int addPatientsToDoctor(int doctorId, Collection<Integer> patientIds) {
+        return doctorRepository.addPatientsToDoctor(doctorId, patientIds);
+    }
+
+    public boolean removePatientFromDoctor(int doctorId, Patient patient) {
+        return doctorRepository.removePatientFromDoctor(doctorId, patient);
     }
 
-    public void removePatientFromDoctor(int doctorId, Patient patient) {
-        doctorRepository.removePatientFromDoctor(doctorId, patient);
+    public int removePatientsFromDoctor(int doctorId, Collection<Integer> patientIds) {
+        return doctorRepository.removePatientsFromDoctor(doctorId, patientIds);
     }
 
 
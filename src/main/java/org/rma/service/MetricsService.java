@@ -0,0 +1,304 @@
+package org.rma.service;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.MethodDelegation;
+import jakarta.persistence.Entity;
+import net.bytebuddy.implementation.bind.annotation.AllArguments;
+import net.bytebuddy.implementation.bind.annotation.Origin;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.implementation.bind.annotation.SuperCall;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.rma.repository.MultiLoadResult;
+import org.rma.repository.OperationContext;
+import org.rma.repository.OperationEvent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+
+/**
+ * Calls, errors and latency per repository and service method, together with the session
+ * factory's Hibernate statistics, to find the calls that dominate.
+ *
+ * Repositories and services built with {@link #create} are subclasses whose public methods
+ * record every call in an HdrHistogram, which many threads can write without locking. A service
+ * method's time includes the repository calls it makes. Methods returning a Stream are timed
+ * until the stream is returned, not until it is consumed. The Hibernate figures require
+ * hibernate.generate_statistics.
+ *
+ * Each call is also an org.rma.Operation Java Flight Recorder event with the entity IDs it was
+ * given and the rows it returned, and names the {@link OperationContext} operation for the SQL
+ * and the session and transaction events it causes. With no recording running, the event costs
+ * a check of whether it is enabled.
+ */
+public class MetricsService {
+
+    /** Times are in microseconds; calls per second are over the snapshot's window. */
+    public record MethodStatistics(String method, long calls, long errors, double callsPerSecond,
+                                   double meanMicros, long p50Micros, long p99Micros, long maxMicros) {
+    }
+
+    public record HibernateStatistics(long transactions, long queries, long statements, long entityLoads,
+                                      long entityFetches, long collectionLoads, long flushes,
+                                      long secondLevelCacheHits, long secondLevelCacheMisses,
+                                      long slowestQueryMillis, String slowestQuery) {
+    }
+
+    /** Everything recorded between {@code since} and {@code takenAt}, busiest methods first. */
+    public record Snapshot(Instant since, Instant takenAt, List<MethodStatistics> methods,
+                           HibernateStatistics hibernate) {
+
+        public Duration window() {
+            return Duration.between(since, takenAt);
+        }
+
+        /** The snapshot as a plain-text table. */
+        public String dump() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Metrics for the last %d s%n", window().toSeconds()));
+            text.append(String.format("%-64s %9s %7s %9s %10s %10s %10s %10s%n",
+                    "Method", "Calls", "Errors", "Calls/s", "Mean us", "p50 us", "p99 us", "Max us"));
+            for (MethodStatistics method : methods) {
+                text.append(String.format("%-64s %9d %7d %9.1f %10.1f %10d %10d %10d%n",
+                        method.method(), method.calls(), method.errors(), method.callsPerSecond(),
+                        method.meanMicros(), method.p50Micros(), method.p99Micros(), method.maxMicros()));
+            }
+            text.append(String.format("Hibernate: %d transactions, %d queries, %d statements, %d entity loads, "
+                            + "%d entity fetches, %d collection loads, %d flushes, second-level cache %d hits / %d misses%n",
+                    hibernate.transactions(), hibernate.queries(), hibernate.statements(), hibernate.entityLoads(),
+                    hibernate.entityFetches(), hibernate.collectionLoads(), hibernate.flushes(),
+                    hibernate.secondLevelCacheHits(), hibernate.secondLevelCacheMisses()));
+            if (hibernate.slowestQuery() != null) {
+                text.append(String.format("Slowest query (%d ms): %s%n", hibernate.slowestQueryMillis(), hibernate.slowestQuery()));
+            }
+            return text.toString();
+        }
+    }
+
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int ID_LIMIT = 10;
+
+    private static final class MethodTimer {
+        final String name;
+        final String operation;
+        final String entityType;
+        final boolean returnsNothing;
+        final Histogram nanos = new ConcurrentHistogram(MAX_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+
+        MethodTimer(Method method) {
+            String type = method.getDeclaringClass().getSimpleName();
+            String parameters = Arrays.stream(method.getParameterTypes()).map(Class::getSimpleName)
+                    .collect(Collectors.joining(", "));
+            this.operation = type + "." + method.getName();
+            this.name = operation + "(" + parameters + ")";
+            // PatientRepositoryImpl and PatientService both deal with Patient
+            this.entityType = type.replaceFirst("(RepositoryImpl|Service)$", "");
+            this.returnsNothing = method.getReturnType() == void.class;
+        }
+    }
+
+    /** Called by the generated subclasses; public so classes in other packages can reach it. */
+    public final class TimingInterceptor {
+
+        private TimingInterceptor() {
+        }
+
+        @RuntimeType
+        public Object intercept(@Origin Method method, @AllArguments Object[] arguments,
+                                @SuperCall Callable<?> call) throws Exception {
+            MethodTimer timer = timers.computeIfAbsent(method, MethodTimer::new);
+            String outer = OperationContext.enter(timer.operation);
+            OperationEvent event = new OperationEvent();
+            event.begin();
+            long start = System.nanoTime();
+            Object result = null;
+            try {
+                result = call.call();
+                return result;
+            } catch (Exception | Error e) {
+                timer.errors.increment();
+                event.failed = true;
+                throw e;
+            } finally {
+                timer.nanos.recordValue(Math.min(System.nanoTime() - start, MAX_NANOS));
+                OperationContext.exit(outer);
+                // IDs and row counts are only worked out while a recording wants the event
+                if (event.shouldCommit()) {
+                    event.method = timer.operation;
+                    event.businessOperation = outer == null ? timer.operation : outer;
+                    event.entityType = timer.entityType;
+                    event.ids = describeIds(arguments);
+                    event.rows = timer.returnsNothing ? -1 : rows(result);
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+    private final TimingInterceptor interceptor = new TimingInterceptor();
+    private final Map<Method, MethodTimer> timers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Class<?>> timedClasses = new ConcurrentHashMap<>();
+    private volatile Instant since = Instant.now();
+
+    public MetricsService(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * A new {@code type} built with the constructor matching {@code arguments}, whose public
+     * methods are timed. {@code type} must not be final, and its constructors must take objects.
+     */
+    public <T> T create(Class<T> type, Object... arguments) {
+        Class<?> timed = timedClasses.computeIfAbsent(type, this::timedSubclass);
+        for (Constructor<?> constructor : timed.getConstructors()) {
+            if (accepts(constructor, arguments)) {
+                try {
+                    return type.cast(constructor.newInstance(arguments));
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw new IllegalStateException("Could not create " + type.getName() + ".", e.getCause());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Could not create " + type.getName() + ".", e);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No constructor of " + type.getName() + " takes " + Arrays.toString(arguments) + ".");
+    }
+
+    public Snapshot getSnapshot() {
+        Instant takenAt = Instant.now();
+        Instant from = since;
+        double seconds = Math.max(Duration.between(from, takenAt).toNanos() / 1e9, 1e-9);
+        List<MethodStatistics> methods = new ArrayList<>();
+        for (MethodTimer timer : timers.values()) {
+            Histogram nanos = timer.nanos.copy();
+            methods.add(new MethodStatistics(timer.name, nanos.getTotalCount(), timer.errors.sum(),
+                    nanos.getTotalCount() / seconds, nanos.getMean() / 1_000,
+                    nanos.getValueAtPercentile(50) / 1_000, nanos.getValueAtPercentile(99) / 1_000,
+                    nanos.getMaxValue() / 1_000));
+        }
+        // Busiest first: total time spent, not call count
+        methods.sort(Comparator.comparingDouble((MethodStatistics m) -> m.calls() * m.meanMicros()).reversed());
+        return new Snapshot(from, takenAt, methods, getHibernateStatistics());
+    }
+
+    public void clearStatistics() {
+        timers.values().forEach(timer -> {
+            timer.nanos.reset();
+            timer.errors.reset();
+        });
+        sessionFactory.getStatistics().clear();
+        since = Instant.now();
+    }
+
+    private HibernateStatistics getHibernateStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        return new HibernateStatistics(statistics.getTransactionCount(), statistics.getQueryExecutionCount(),
+                statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(),
+                statistics.getEntityFetchCount(), statistics.getCollectionLoadCount(), statistics.getFlushCount(),
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                statistics.getQueryExecutionMaxTime(), statistics.getQueryExecutionMaxTimeQueryString());
+    }
+
+    private Class<?> timedSubclass(Class<?> type) {
+        try {
+            return new ByteBuddy()
+                    .subclass(type, ConstructorStrategy.Default.IMITATE_SUPER_CLASS_PUBLIC)
+                    .method(isPublic().and(isDeclaredBy(type)))
+                    .intercept(MethodDelegation.to(interceptor))
+                    .make()
+                    .load(type.getClassLoader(), ClassLoadingStrategy.UsingLookup.of(
+                            MethodHandles.privateLookupIn(type, MethodHandles.lookup())))
+                    .getLoaded();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot define a timed subclass of " + type.getName() + ".", e);
+        }
+    }
+
+    private static boolean accepts(Constructor<?> constructor, Object[] arguments) {
+        Class<?>[] parameters = constructor.getParameterTypes();
+        if (parameters.length != arguments.length) {
+            return false;
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isPrimitive() || arguments[i] != null && !parameters[i].isInstance(arguments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Integer arguments, entities as Type#id and the first few elements of collections. */
+    private String describeIds(Object[] arguments) {
+        StringJoiner ids = new StringJoiner(", ");
+        for (Object argument : arguments) {
+            if (argument instanceof Collection<?> collection) {
+                ids.add(collection.stream().limit(ID_LIMIT).map(this::describeId)
+                        .collect(Collectors.joining(", ", "[", collection.size() > ID_LIMIT
+                                ? ", ... " + collection.size() + " in all]" : "]")));
+            } else if (argument != null) {
+                String id = describeId(argument);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids.toString();
+    }
+
+    private String describeId(Object value) {
+        if (value instanceof Integer) {
+            return value.toString();
+        }
+        if (value.getClass().isAnnotationPresent(Entity.class)) {
+            return value.getClass().getSimpleName() + "#" + sessionFactory.getPersistenceUnitUtil().getIdentifier(value);
+        }
+        return null;
+    }
+
+    private static long rows(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        if (result instanceof Boolean changed) {
+            return changed ? 1 : 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof MultiLoadResult<?> loaded) {
+            return loaded.found().size();
+        }
+        return 1;
+    }
+}
@@ -2,8 +2,11 @@ package org.rma.service;
 
 
 import org.rma.model.Office;
+import org.rma.model.OfficeSummary;
+import org.rma.repository.MultiLoadResult;
 import org.rma.repository.OfficeRepositoryImpl;
 
+import java.util.Collection;
 import java.util.List;
 
 public class OfficeService {
@@ -22,10 +25,30 @@ public class OfficeService {
         return officeRepository.findById(id);
     }
 
+    public MultiLoadResult<Office> getOfficesByIds(Collection<Integer> ids) {
+        return officeRepository.findAllByIds(ids);
+    }
+
     public List<Office> getAllOffices() {
         return officeRepository.findAll();
     }
 
+    public List<Office> getOfficePage(int afterId, int limit) {
+        return officeRepository.findPage(afterId, limit);
+    }
+
+    public PageCursor<Office> pageOffices(int pageSize) {
+        return new PageCursor<>(officeRepository::findPage, Office::getOfficeId, pageSize);
+    }
+
+    public List<OfficeSummary> getAllOfficeSummaries() {
+        return officeRepository.findAllSummaries();
+    }
+
+    public PageCursor<OfficeSummary> pageOfficeSummaries(int pageSize) {
+        return new PageCursor<>(officeRepository::findSummaryPage, OfficeSummary::officeId, pageSize);
+    }
+
     public void updateOffice(Office office) {
         officeRepository.updateOffice(office);
     }
@@ -0,0 +1,62 @@
+package org.rma.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Walks a table page by page using keyset pagination: each page starts after the last
+ * ID of the previous one, so every page costs the same no matter how deep it is.
+ */
+public class PageCursor<T> {
+
+    /** Loads up to {@code limit} rows with an ID greater than {@code afterId}, in ID order. */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        List<T> load(int afterId, int limit);
+    }
+
+    private final PageLoader<T> loader;
+    private final ToIntFunction<T> idOf;
+    private final int pageSize;
+
+    private int lastId;
+    private boolean hasNext = true;
+
+    public PageCursor(PageLoader<T> loader, ToIntFunction<T> idOf, int pageSize) {
+        this(loader, idOf, pageSize, 0);
+    }
+
+    public PageCursor(PageLoader<T> loader, ToIntFunction<T> idOf, int pageSize, int afterId) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.loader = loader;
+        this.idOf = idOf;
+        this.pageSize = pageSize;
+        this.lastId = afterId;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /** Returns the next page, or an empty list once the end has been reached. */
+    public List<T> next() {
+        if (!hasNext) {
+            return Collections.emptyList();
+        }
+        List<T> page = loader.load(lastId, pageSize);
+        if (!page.isEmpty()) {
+            lastId = idOf.applyAsInt(page.get(page.size() - 1));
+        }
+        // A short page means there is nothing after it
+        hasNext = page.size() == pageSize;
+        return page;
+    }
+
+    /** ID of the last row returned so far; pass it back as {@code afterId} to resume later. */
+    public int getLastId() {
+        return lastId;
+    }
+}
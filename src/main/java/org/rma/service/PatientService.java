@@ -2,8 +2,11 @@ package org.rma.service;
 
 import org.rma.model.Doctor;
 import org.rma.model.Patient;
+import org.rma.model.PatientSummary;
+import org.rma.repository.MultiLoadResult;
 import org.rma.repository.PatientRepositoryImpl;
 
+import java.util.Collection;
 import java.util.List;
 
 public class PatientService {
@@ -19,14 +22,39 @@ public class PatientService {
         patientRepository.create(patient);
     }
 
+    public void createPatients(Collection<Patient> patients) {
+        patientRepository.createAll(patients);
+    }
+
     public Patient getPatientById(int id) {
         return patientRepository.findById(id);
     }
 
+    /** One round trip per batch of IDs instead of one per patient; see {@link MultiLoadResult}. */
+    public MultiLoadResult<Patient> getPatientsByIds(Collection<Integer> ids) {
+        return patientRepository.findAllByIds(ids);
+    }
+
     public List<Patient> getAllPatients() {
         return patientRepository.findAll();
     }
 
+    public List<Patient> getPatientPage(int afterId, int limit) {
+        return patientRepository.findPage(afterId, limit);
+    }
+
+    public PageCursor<Patient> pagePatients(int pageSize) {
+        return new PageCursor<>(patientRepository::findPage, Patient::getPatientId, pageSize);
+    }
+
+    public List<PatientSummary> getAllPatientSummaries() {
+        return patientRepository.findAllSummaries();
+    }
+
+    public PageCursor<PatientSummary> pagePatientSummaries(int pageSize) {
+        return new PageCursor<>(patientRepository::findSummaryPage, PatientSummary::patientId, pageSize);
+    }
+
     public void updatePatient(Patient patient) {
         patientRepository.update(patient);
     }
@@ -35,11 +63,19 @@ public class PatientService {
         patientRepository.delete(id);
     }
 
-    public void addDoctorToPatient(int patientId, Doctor doctor) {
-        patientRepository.addDoctorToPatient(patientId, doctor);
+    public boolean addDoctorToPatient(int patientId, Doctor doctor) {
+        return patientRepository.addDoctorToPatient(patientId, doctor);
+    }
+
+    public int addDoctorsToPatient(int patientId, Collection<Integer> doctorIds) {
+        return patientRepository.addDoctorsToPatient(patientId, doctorIds);
+    }
+
+    public boolean removeDoctorFromPatient(int patientId, Doctor doctor) {
+        return patientRepository.removeDoctorFromPatient(patientId, doctor);
     }
 
-    public void removeDoctorFromPatient(int patientId, Doctor doctor) {
-        patientRepository.removeDoctorFromPatient(patientId, doctor);
+    public int removeDoctorsFromPatient(int patientId, Collection<Integer> doctorIds) {
+        return patientRepository.removeDoctorsFromPatient(patientId, doctorIds);
     }
 }
\ No newline at end of file
@@ -1,20 +1,40 @@
 package org.rma.service;
 
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.rma.model.Appointment;
+import org.rma.model.AppointmentRow;
 import org.rma.model.Doctor;
+import org.rma.model.Office;
 import org.rma.model.Patient;
 import org.rma.repository.AppointmentRepositoryImpl;
 import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.OfficeRepositoryImpl;
 import org.rma.repository.PatientRepositoryImpl;
+import org.rma.repository.SyntheticDataGenerator;
+import org.rma.repository.UnitOfWork;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -70,7 +90,7 @@ public class AppointmentServiceTest {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
-        appointment.setAppointmentDate("2024-09-01");
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-01"));
         appointment.setNotes("Annual checkup");
 
         appointmentService.createAppointment(appointment);
@@ -96,7 +116,7 @@ public class AppointmentServiceTest {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
-        appointment.setAppointmentDate("2024-09-01");
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-01"));
         appointment.setNotes("Routine Checkup");
 
         appointmentService.createAppointment(appointment);
@@ -126,14 +146,14 @@ public class AppointmentServiceTest {
         Appointment appointment1 = new Appointment();
         appointment1.setPatient(patient1);
         appointment1.setDoctor(doctor1);
-        appointment1.setAppointmentDate("2024-10-01");
+        appointment1.setAppointmentDate(LocalDate.parse("2024-10-01"));
         appointment1.setNotes("Dental Checkup");
         appointmentService.createAppointment(appointment1);
 
         Appointment appointment2 = new Appointment();
         appointment2.setPatient(patient1);
         appointment2.setDoctor(doctor1);
-        appointment2.setAppointmentDate("2024-11-01");
+        appointment2.setAppointmentDate(LocalDate.parse("2024-11-01"));
         appointment2.setNotes("Follow-up");
         appointmentService.createAppointment(appointment2);
 
@@ -146,6 +166,40 @@ public class AppointmentServiceTest {
     }
 
 
+    @Test
+    public void testStreamAllAppointments() {
+        Patient patient = new Patient();
+        patient.setFirstName("Stream");
+        patient.setLastName("Patient");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Stream");
+        doctor.setLastName("Doctor");
+        doctorService.createDoctor(doctor);
+
+        List<Appointment> created = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setAppointmentDate(LocalDate.parse("2024-12-01"));
+            appointment.setNotes("Streamed " + i);
+            created.add(appointment);
+        }
+        appointmentService.createAppointments(created);
+
+        // Spans several fetch-size chunks, so the session is cleared while streaming
+        List<Integer> streamedIds = new ArrayList<>();
+        appointmentService.streamAllAppointments(a -> {
+            assertEquals(doctor.getDoctorId(), a.getDoctor().getDoctorId(), "Doctor should be fetched with the appointment.");
+            streamedIds.add(a.getAppointmentId());
+        });
+
+        assertEquals(1_200, streamedIds.size(), "Every appointment should be streamed once.");
+        assertTrue(streamedIds.contains(created.get(1_199).getAppointmentId()));
+    }
+
     @Test
     public void testUpdateAppointment() {
         Patient patient = new Patient();
@@ -161,7 +215,7 @@ public class AppointmentServiceTest {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
-        appointment.setAppointmentDate("2024-09-02");
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-02"));
         appointment.setNotes("Initial notes");
 
         appointmentService.createAppointment(appointment);
@@ -172,6 +226,51 @@ public class AppointmentServiceTest {
         assertEquals("Updated notes", updatedAppointment.getNotes());
     }
 
+    @Test
+    public void testUpdateAppointmentMovesLinkInOneTransaction() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor oldDoctor = new Doctor();
+        oldDoctor.setFirstName("Jane");
+        oldDoctor.setLastName("Smith");
+        doctorService.createDoctor(oldDoctor);
+
+        Doctor newDoctor = new Doctor();
+        newDoctor.setFirstName("Bob");
+        newDoctor.setLastName("Jones");
+        doctorService.createDoctor(newDoctor);
+
+        doctorService.addPatientToDoctor(oldDoctor.getDoctorId(), patient);
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(oldDoctor);
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-05"));
+        appointment.setNotes("Initial doctor");
+        appointmentService.createAppointment(appointment);
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        appointment.setDoctor(newDoctor);
+        appointment.setNotes("Reassigned");
+        appointmentService.updateAppointment(appointment);
+
+        // select + update + unlink old pair + link new pair, all in one session and commit
+        assertEquals(1, statistics.getSessionOpenCount(), "The update should use a single session.");
+        assertEquals(1, statistics.getSuccessfulTransactionCount(), "The update should commit once.");
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "Expected at most 4 statements, got " + statistics.getPrepareStatementCount());
+
+        assertEquals("Reassigned", appointmentService.getAppointmentById(appointment.getAppointmentId()).getNotes());
+        assertFalse(doctorService.getDoctorById(oldDoctor.getDoctorId()).getPatients().contains(patient),
+                "The old doctor should lose the patient once no appointment links them.");
+        assertTrue(doctorService.getDoctorById(newDoctor.getDoctorId()).getPatients().contains(patient),
+                "The new doctor should be linked to the patient.");
+    }
+
     @Test
     public void testDeleteAppointment() {
         Patient patient = new Patient();
@@ -187,7 +286,7 @@ public class AppointmentServiceTest {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
-        appointment.setAppointmentDate("2024-09-03");
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-03"));
         appointment.setNotes("To be deleted");
 
         appointmentService.createAppointment(appointment);
@@ -197,9 +296,600 @@ public class AppointmentServiceTest {
         assertNull(appointmentService.getAppointmentById(id));
     }
 
+    @Test
+    public void testDeleteAppointmentDropsLinkOnlyWithLastAppointment() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+        doctorService.addPatientToDoctor(doctor.getDoctorId(), patient);
+
+        Appointment first = new Appointment();
+        first.setPatient(patient);
+        first.setDoctor(doctor);
+        first.setAppointmentDate(LocalDate.parse("2024-09-03"));
+        appointmentService.createAppointment(first);
+
+        Appointment second = new Appointment();
+        second.setPatient(patient);
+        second.setDoctor(doctor);
+        second.setAppointmentDate(LocalDate.parse("2024-09-10"));
+        appointmentService.createAppointment(second);
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        appointmentService.deleteAppointment(first.getAppointmentId());
+
+        // select + delete + conditional unlink, in one session and commit
+        assertEquals(1, statistics.getSessionOpenCount(), "The delete should use a single session.");
+        assertEquals(1, statistics.getSuccessfulTransactionCount(), "The delete should commit once.");
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "Expected at most 3 statements, got " + statistics.getPrepareStatementCount());
+        assertNull(appointmentService.getAppointmentById(first.getAppointmentId()));
+        assertTrue(doctorService.getDoctorById(doctor.getDoctorId()).getPatients().contains(patient),
+                "The link should stay while another appointment remains.");
+
+        appointmentService.deleteAppointment(second.getAppointmentId());
+        assertFalse(doctorService.getDoctorById(doctor.getDoctorId()).getPatients().contains(patient),
+                "The link should go with the last appointment.");
+    }
+
+    @Test
+    public void testCreateAppointmentFlowInOneUnitOfWork() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-01"));
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        new UnitOfWork(sessionFactory).run(() -> {
+            doctorService.addPatientToDoctor(doctor.getDoctorId(), patient);
+            patientService.addDoctorToPatient(patient.getPatientId(), doctor);
+            appointmentService.createAppointment(appointment);
+        });
+
+        assertEquals(1, statistics.getSessionOpenCount(), "The flow should share a single session.");
+        assertEquals(1, statistics.getSuccessfulTransactionCount(), "The flow should commit once.");
+        assertNotNull(appointmentService.getAppointmentById(appointment.getAppointmentId()));
+        assertTrue(doctorService.getDoctorById(doctor.getDoctorId()).getPatients().contains(patient));
+    }
+
+    @Test
+    public void testUnitOfWorkRollsBackEveryCallOnFailure() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-01"));
+
+        assertThrows(IllegalStateException.class, () -> new UnitOfWork(sessionFactory).run(() -> {
+            doctorService.addPatientToDoctor(doctor.getDoctorId(), patient);
+            appointmentService.createAppointment(appointment);
+            throw new IllegalStateException("Slot already taken");
+        }));
+
+        assertTrue(appointmentService.getAllAppointments().isEmpty(), "The appointment should be rolled back.");
+        assertFalse(doctorService.getDoctorById(doctor.getDoctorId()).getPatients().contains(patient),
+                "The link should be rolled back.");
+    }
+
+    @Test
+    public void testFindAppointmentsByDoctorAndPatientDateRange() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Patient otherPatient = new Patient();
+        otherPatient.setFirstName("Mary");
+        otherPatient.setLastName("Major");
+        patientService.createPatient(otherPatient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        Doctor otherDoctor = new Doctor();
+        otherDoctor.setFirstName("Alan");
+        otherDoctor.setLastName("Grant");
+        doctorService.createDoctor(otherDoctor);
+
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDate start = LocalDate.of(2024, 9, 1);
+        for (int day = 0; day < 10; day++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(day % 2 == 0 ? patient : otherPatient);
+            appointment.setDoctor(day < 5 ? doctor : otherDoctor);
+            appointment.setAppointmentDate(start.plusDays(day));
+            appointments.add(appointment);
+        }
+        appointmentService.createAppointments(appointments);
+
+        // Sept 2-6 inclusive: the doctor is booked Sept 1-5, the patient on odd days
+        List<Appointment> doctorDay = appointmentService.getAppointmentsByDoctorAndDateRange(
+                doctor.getDoctorId(), LocalDate.of(2024, 9, 2), LocalDate.of(2024, 9, 6));
+        assertEquals(List.of(LocalDate.of(2024, 9, 2), LocalDate.of(2024, 9, 3), LocalDate.of(2024, 9, 4), LocalDate.of(2024, 9, 5)),
+                doctorDay.stream().map(Appointment::getAppointmentDate).toList());
+        assertTrue(doctorDay.stream().allMatch(a -> a.getPatient() != null && a.getDoctor().equals(doctor)));
+
+        List<Appointment> patientDays = appointmentService.getAppointmentsByPatientAndDateRange(
+                patient.getPatientId(), LocalDate.of(2024, 9, 2), LocalDate.of(2024, 9, 6));
+        assertEquals(List.of(LocalDate.of(2024, 9, 3), LocalDate.of(2024, 9, 5)),
+                patientDays.stream().map(Appointment::getAppointmentDate).toList());
+
+        assertTrue(appointmentService.getAppointmentsByDoctorAndDateRange(
+                doctor.getDoctorId(), LocalDate.of(2024, 9, 6), LocalDate.of(2024, 9, 30)).isEmpty());
+    }
+
+    @Test
+    public void testDoctorsTakeAnyNumberOfAppointmentsPerDayByDefault() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2025, 1, 2);
+        appointmentService.createAppointment(appointmentFor(patient, doctor, day));
+        appointmentService.createAppointment(appointmentFor(patient, doctor, day));
+
+        assertEquals(2, appointmentService.getAppointmentsByDoctorAndDateRange(doctor.getDoctorId(), day, day).size());
+        assertTrue(appointmentService.isSlotAvailable(doctor.getDoctorId(), day));
+    }
+
+    @Test
+    public void testCreateAppointmentRejectsDoubleBooking() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        Doctor otherDoctor = new Doctor();
+        otherDoctor.setFirstName("Alan");
+        otherDoctor.setLastName("Grant");
+        doctorService.createDoctor(otherDoctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        limited.createAppointment(appointmentFor(patient, doctor, day));
+        limited.createAppointment(appointmentFor(patient, doctor, day.plusDays(1)));
+
+        IllegalStateException conflict = assertThrows(IllegalStateException.class,
+                () -> limited.createAppointment(appointmentFor(patient, doctor, day)));
+        assertTrue(conflict.getMessage().contains(day.plusDays(2).toString()), conflict.getMessage());
+        assertEquals(day.plusDays(2), limited.nextFreeSlot(doctor.getDoctorId(), day));
+        assertEquals(2, limited.getAllAppointments().size(), "The rejected booking should not be saved.");
+
+        // Other doctors are unaffected, and moving an appointment onto a booked day is refused too
+        Appointment elsewhere = appointmentFor(patient, otherDoctor, day);
+        limited.createAppointment(elsewhere);
+        elsewhere.setDoctor(doctor);
+        elsewhere.setAppointmentDate(day.plusDays(1));
+        assertThrows(IllegalStateException.class, () -> limited.updateAppointment(elsewhere));
+        assertTrue(limited.isSlotAvailable(otherDoctor.getDoctorId(), day.plusDays(1)));
+    }
+
+    @Test
+    public void testBookingsAreCheckedAgainstTheIndex() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        assertTrue(limited.isSlotAvailable(doctor.getDoctorId(), day)); // index loaded before the bookings
+
+        List<StatementBudget.Statement> statements = StatementBudget.statementsOf(() -> {
+            limited.createAppointment(appointmentFor(patient, doctor, day));
+            limited.createAppointment(appointmentFor(patient, doctor, day.plusDays(1)));
+        });
+
+        assertTrue(statements.stream().map(statement -> statement.sql().toLowerCase())
+                        .noneMatch(sql -> sql.startsWith("select") && (sql.contains(" from appointments") || sql.contains("for update"))),
+                "Bookings on free days should not read or lock appointments: " + statements);
+        assertFalse(limited.isSlotAvailable(doctor.getDoctorId(), day));
+    }
+
+    @Test
+    public void testStaleIndexDoesNotRefuseAFreeSlot() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        Appointment appointment = appointmentFor(patient, doctor, day);
+        limited.createAppointment(appointment);
+
+        // Deleted past the limited service, so its index still shows the day full
+        appointmentService.deleteAppointment(appointment.getAppointmentId());
+        assertFalse(limited.isSlotAvailable(doctor.getDoctorId(), day));
+
+        limited.createAppointment(appointmentFor(patient, doctor, day));
+        assertEquals(1, limited.getAppointmentsByDoctorAndDateRange(doctor.getDoctorId(), day, day).size());
+        assertFalse(limited.isSlotAvailable(doctor.getDoctorId(), day));
+    }
+
+    @Test
+    public void testDeletedAppointmentFreesItsSlot() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        Appointment appointment = appointmentFor(patient, doctor, day);
+        limited.createAppointment(appointment);
+        assertFalse(limited.isSlotAvailable(doctor.getDoctorId(), day));
+
+        limited.deleteAppointment(appointment.getAppointmentId());
+        assertTrue(limited.isSlotAvailable(doctor.getDoctorId(), day));
+        limited.createAppointment(appointmentFor(patient, doctor, day));
+    }
+
+    @Test
+    public void testRolledBackBookingDoesNotHoldItsSlot() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        assertTrue(limited.isSlotAvailable(doctor.getDoctorId(), day)); // index loaded before the booking
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory);
+        assertThrows(IllegalArgumentException.class, () -> unitOfWork.run(() -> {
+            limited.createAppointment(appointmentFor(patient, doctor, day));
+            throw new IllegalArgumentException("Later step failed");
+        }));
+
+        assertTrue(limited.isSlotAvailable(doctor.getDoctorId(), day), "A rolled-back booking should not take the slot.");
+        assertTrue(limited.getAppointmentsByDoctorAndDateRange(doctor.getDoctorId(), day, day).isEmpty());
+        limited.createAppointment(appointmentFor(patient, doctor, day));
+        assertFalse(limited.isSlotAvailable(doctor.getDoctorId(), day));
+    }
+
+    @Test
+    public void testConcurrentBookingsOfOneSlotAdmitOnlyOne() throws Exception {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        LocalDate day = LocalDate.of(2024, 9, 2);
+        AppointmentService limited = oneAppointmentPerDay();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        try {
+            List<Future<?>> attempts = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        limited.createAppointment(appointmentFor(patient, doctor, day));
+                        booked.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, booked.get(), "Only one booking should get the slot.");
+        assertEquals(threads - 1, refused.get());
+        assertEquals(1, limited.getAppointmentsByDoctorAndDateRange(doctor.getDoctorId(), day, day).size());
+    }
+
+    @Test
+    public void testListingAppointmentsDoesNotLoadRowByRow() {
+        OfficeService officeService = new OfficeService(new OfficeRepositoryImpl(sessionFactory));
+        List<Patient> patients = new ArrayList<>();
+        List<Doctor> doctors = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient" + i);
+            patient.setLastName("Listing");
+            patients.add(patient);
+
+            Doctor doctor = new Doctor();
+            doctor.setFirstName("Doctor" + i);
+            doctor.setLastName("Listing");
+            doctors.add(doctor);
+        }
+        patientService.createPatients(patients);
+        doctorService.createDoctors(doctors);
+        for (int i = 0; i < doctors.size(); i += 2) {
+            Office office = new Office();
+            office.setLocation("Room " + i);
+            office.setDoctor(doctors.get(i));
+            officeService.createOffice(office);
+        }
+
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            appointments.add(appointmentFor(patients.get(i % 10), doctors.get(i % 7), LocalDate.of(2024, 9, 1).plusDays(i)));
+        }
+        appointmentService.createAppointments(appointments);
+        new CacheService(sessionFactory).evictAll();
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<Appointment> listed = appointmentService.getAllAppointments();
+
+        assertEquals(30, listed.size());
+        assertEquals(1, statistics.getPrepareStatementCount(),
+                "Patients and doctors should come with the appointments, not one query per row.");
+        listed.forEach(a -> {
+            assertNotNull(a.getPatient().getFirstName());
+            assertNotNull(a.getDoctor().getLastName());
+        });
+        assertEquals(1, statistics.getPrepareStatementCount(), "Walking the listing should not hit the database.");
+
+        statistics.clear();
+        Appointment single = appointmentService.getAppointmentById(listed.get(0).getAppointmentId());
+        assertNotNull(single.getDoctor().getLastName());
+        assertEquals(1, statistics.getPrepareStatementCount(), "A single appointment should load in one query.");
+    }
+
+    @Test
+    public void testGetAllAppointmentsStatementBudget() {
+        List<Doctor> doctors = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Doctor budgetDoctor = new Doctor();
+            budgetDoctor.setFirstName("Budget");
+            budgetDoctor.setLastName("Doctor " + i);
+            doctors.add(budgetDoctor);
+        }
+        doctorService.createDoctors(doctors);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Patient budgetPatient = new Patient();
+            budgetPatient.setFirstName("Budget");
+            budgetPatient.setLastName("Patient " + i);
+            patients.add(budgetPatient);
+        }
+        patientService.createPatients(patients);
+        List<Appointment> created = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setDoctor(doctors.get(i % doctors.size()));
+            appointment.setPatient(patients.get(i % patients.size()));
+            appointment.setAppointmentDate(LocalDate.parse("2025-01-01").plusDays(i));
+            created.add(appointment);
+        }
+        appointmentService.createAppointments(created);
+
+        // Patients and doctors come with the appointments, however many there are; reading them
+        // is inside the budget, so a doctor or patient loaded row by row would go over it
+        Set<Integer> createdIds = created.stream().map(Appointment::getAppointmentId).collect(Collectors.toSet());
+        List<Appointment> appointments = StatementBudget.assertAtMost(2, () -> {
+            List<Appointment> all = appointmentService.getAllAppointments();
+            for (Appointment a : all) {
+                if (createdIds.contains(a.getAppointmentId())) {
+                    assertNotNull(a.getDoctor(), "Every appointment created here has a doctor.");
+                    assertTrue(Hibernate.isInitialized(a.getDoctor()), "Doctors should be fetched with the appointments.");
+                    assertTrue(Hibernate.isInitialized(a.getPatient()), "Patients should be fetched with the appointments.");
+                    assertNotNull(a.getDoctor().getLastName());
+                    assertNotNull(a.getPatient().getLastName());
+                }
+            }
+            return all;
+        });
+
+        assertTrue(appointments.size() >= 1000, "All appointments should be listed.");
+    }
+
+    @Test
+    public void testAppointmentRowsAreProjectedWithoutLoadingEntities() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            appointments.add(appointmentFor(patient, doctor, LocalDate.of(2024, 10, 1).plusDays(i)));
+        }
+        appointments.add(appointmentFor(patient, null, LocalDate.of(2024, 10, 9)));
+        appointmentService.createAppointments(appointments);
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<AppointmentRow> rows = appointmentService.getAllAppointmentRows();
+
+        assertEquals(6, rows.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Names should come from the same joined query.");
+        assertEquals(0, statistics.getEntityLoadCount(), "A projection should not load any entity.");
+        AppointmentRow first = rows.get(0);
+        assertEquals(appointments.get(0).getAppointmentId(), first.appointmentId());
+        assertEquals(LocalDate.of(2024, 10, 1), first.appointmentDate());
+        assertEquals("John", first.patientFirstName());
+        assertEquals("Smith", first.doctorLastName());
+        AppointmentRow withoutDoctor = rows.get(5);
+        assertNull(withoutDoctor.doctorId(), "An appointment without a doctor should still be listed.");
+        assertEquals(patient.getPatientId(), withoutDoctor.patientId());
+
+        PageCursor<AppointmentRow> pages = appointmentService.pageAppointmentRows(4);
+        assertEquals(4, pages.next().size());
+        assertEquals(rows.subList(4, 6), pages.next());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void testHasOtherAppointmentsBetweenNeedsTwoAppointments() {
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        assertFalse(appointmentService.hasOtherAppointmentsBetween(doctor.getDoctorId(), patient.getPatientId()));
+        appointmentService.createAppointment(appointmentFor(patient, doctor, LocalDate.of(2024, 11, 1)));
+        assertFalse(appointmentService.hasOtherAppointmentsBetween(doctor.getDoctorId(), patient.getPatientId()),
+                "A single appointment has no other one.");
+        for (int i = 2; i <= 5; i++) {
+            appointmentService.createAppointment(appointmentFor(patient, doctor, LocalDate.of(2024, 11, i)));
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        assertTrue(appointmentService.hasOtherAppointmentsBetween(doctor.getDoctorId(), patient.getPatientId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testSyntheticDataIsSeededAndConsistent() {
+        SyntheticDataGenerator.Scale scale = new SyntheticDataGenerator.Scale(20, 300, 2_000, 2);
+        SyntheticDataGenerator.Result first = new SyntheticDataGenerator(sessionFactory, 7).generate(scale);
+        SyntheticDataGenerator.Result second = new SyntheticDataGenerator(sessionFactory, 7).generate(scale);
+
+        // Same seed, same data set: only the IDs differ
+        assertArrayEquals(positions(first.doctorIds(), first.appointmentDoctorIds()),
+                positions(second.doctorIds(), second.appointmentDoctorIds()));
+        assertArrayEquals(positions(first.patientIds(), first.appointmentPatientIds()),
+                positions(second.patientIds(), second.appointmentPatientIds()));
+        assertEquals(first.links(), second.links());
+
+        assertEquals(40, doctorService.getAllDoctorSummaries().size());
+        List<AppointmentRow> rows = appointmentService.getAllAppointmentRows();
+        assertEquals(4_000, rows.size());
+        LocalDate end = SyntheticDataGenerator.FIRST_DAY.plusYears(2);
+        for (AppointmentRow row : rows) {
+            assertFalse(row.appointmentDate().isBefore(SyntheticDataGenerator.FIRST_DAY) || row.appointmentDate().isAfter(end));
+            assertTrue(row.appointmentDate().getDayOfWeek().getValue() <= 5, "Appointments fall on weekdays.");
+        }
+
+        try (Session check = sessionFactory.openSession()) {
+            Long unlinked = check.createNativeQuery("SELECT COUNT(*) FROM Appointments a WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM Doctor_Patient dp WHERE dp.DoctorID = a.DoctorID AND dp.PatientID = a.PatientID)", Long.class).uniqueResult();
+            assertEquals(0, unlinked.intValue(), "Every appointment's doctor and patient are linked.");
+
+            List<Long> patientsPerDoctor = check.createNativeQuery("SELECT COUNT(*) FROM Doctor_Patient " +
+                            "WHERE DoctorID IN (:ids) GROUP BY DoctorID ORDER BY COUNT(*) DESC", Long.class)
+                    .setParameterList("ids", Arrays.stream(first.doctorIds()).boxed().toList())
+                    .getResultList();
+            assertTrue(patientsPerDoctor.get(0).intValue() >= 4 * patientsPerDoctor.get(patientsPerDoctor.size() / 2).intValue(),
+                    "Patients per doctor are skewed: " + patientsPerDoctor);
+        }
+
+        // Hibernate keeps allocating IDs after the generated ones
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        patientService.createPatient(patient);
+        assertTrue(patient.getPatientId() > Arrays.stream(second.patientIds()).max().getAsInt());
+    }
+
+    /** Each ID replaced by its position in {@code ids}. */
+    private static int[] positions(int[] ids, int[] values) {
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            positions.put(ids[i], i);
+        }
+        return Arrays.stream(values).map(positions::get).toArray();
+    }
+
+    /** A service whose doctors take at most one appointment per day. */
+    private AppointmentService oneAppointmentPerDay() {
+        AppointmentRepositoryImpl appointmentRepository = new AppointmentRepositoryImpl(sessionFactory);
+        return new AppointmentService(appointmentRepository, new DoctorRepositoryImpl(sessionFactory),
+                new PatientRepositoryImpl(sessionFactory),
+                new DoctorScheduleIndex(appointmentRepository, new UnitOfWork(sessionFactory), 1));
+    }
+
+    private static Appointment appointmentFor(Patient patient, Doctor doctor, LocalDate date) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setAppointmentDate(date);
+        return appointment;
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"2024-09-01", "2024-09-02", "2024-09-03", "2024-09-04"})
-    public void testCreateAppointmentWithDifferentDates(String date) {
+    public void testCreateAppointmentWithDifferentDates(LocalDate date) {
         Appointment appointment = new Appointment();
         appointment.setAppointmentDate(date);
         appointment.setNotes("Checkup");
@@ -14,6 +14,7 @@ import org.rma.repository.AppointmentRepositoryImpl;
 import org.rma.repository.DoctorRepositoryImpl;
 import org.rma.repository.PatientRepositoryImpl;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -79,7 +80,7 @@ public class AppointmentServiceTestAll {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
-        appointment.setAppointmentDate("2024-09-01");
+        appointment.setAppointmentDate(LocalDate.parse("2024-09-01"));
         appointment.setNotes("Annual checkup");
 
         // Act
@@ -129,14 +130,14 @@ public class AppointmentServiceTestAll {
         Appointment appointment1 = new Appointment();
         appointment1.setPatient(patient);
         appointment1.setDoctor(doctor);
-        appointment1.setAppointmentDate("2024-09-06");
+        appointment1.setAppointmentDate(LocalDate.parse("2024-09-06"));
         appointment1.setNotes("Follow-up visit");
         appointmentService.createAppointment(appointment1);
 
         Appointment appointment2 = new Appointment();
         appointment2.setPatient(patient);
         appointment2.setDoctor(doctor);
-        appointment2.setAppointmentDate("2024-09-07");
+        appointment2.setAppointmentDate(LocalDate.parse("2024-09-07"));
         appointment2.setNotes("Final consultation");
         appointmentService.createAppointment(appointment2);
 
@@ -150,7 +151,7 @@ public class AppointmentServiceTestAll {
     @ParameterizedTest
     @ValueSource(strings = {"2024-09-08", "2024-09-09", "2024-09-10", "2024-09-11"})
     @Order(6)
-    public void testCreateAppointmentWithDifferentDates(String date) {
+    public void testCreateAppointmentWithDifferentDates(LocalDate date) {
         Appointment appointment = new Appointment();
         appointment.setPatient(patient);
         appointment.setDoctor(doctor);
@@ -1,16 +1,30 @@
 package org.rma.service;
 
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.rma.model.Doctor;
+import org.rma.model.DoctorSummary;
+import org.rma.model.Office;
+import org.rma.model.Patient;
 import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.MultiLoadResult;
+import org.rma.repository.OfficeRepositoryImpl;
+import org.rma.repository.PatientRepositoryImpl;
+import org.rma.repository.UnitOfWork;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -127,6 +141,279 @@ public class DoctorServiceTest {
         assertNull(doctorService.getDoctorById(id));
     }
 
+    @Test
+    public void testDoctorsAreKeptInSecondLevelCache() {
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Meredith");
+        doctor.setLastName("Grey");
+        doctor.setSpecialty("Surgery");
+        doctor.setEmail("grey@example.com");
+        doctorService.createDoctor(doctor);
+
+        CacheService cacheService = new CacheService(sessionFactory);
+        cacheService.evictAll();
+        Doctor loaded = doctorService.getDoctorById(doctor.getDoctorId());
+        assertTrue(sessionFactory.getCache().containsEntity(Doctor.class, doctor.getDoctorId()),
+                "Reading a doctor should put it in the doctors region.");
+
+        // Lookups by ID, such as a lazy appointment doctor or an office's doctor, are served from the region
+        cacheService.clearStatistics();
+        Statistics statistics = sessionFactory.getStatistics();
+        try (Session lookup = sessionFactory.openSession()) {
+            assertEquals("Surgery", lookup.get(Doctor.class, doctor.getDoctorId()).getSpecialty());
+        }
+        CacheService.RegionStatistics doctors = cacheService.getRegionStatistics().stream()
+                .filter(region -> region.region().equals("doctors"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(1, doctors.hits(), "The lookup should be served from the doctors region.");
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Updates go through the cache, so the next read sees them
+        loaded.setSpecialty("Cardiothoracic Surgery");
+        doctorService.updateDoctor(loaded);
+        try (Session lookup = sessionFactory.openSession()) {
+            assertEquals("Cardiothoracic Surgery", lookup.get(Doctor.class, doctor.getDoctorId()).getSpecialty());
+        }
+
+        doctorService.deleteDoctor(doctor.getDoctorId());
+        try (Session lookup = sessionFactory.openSession()) {
+            assertNull(lookup.get(Doctor.class, doctor.getDoctorId()), "Deleted doctors should be evicted.");
+        }
+    }
+
+    @Test
+    public void testGetDoctorByIdJoinsPatientsWhenCached() {
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Gregory");
+        doctor.setLastName("House");
+        doctorService.createDoctor(doctor);
+        PatientService patientService = new PatientService(new PatientRepositoryImpl(sessionFactory));
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient" + i);
+            patient.setLastName("Doe");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+        doctorService.addPatientsToDoctor(doctor.getDoctorId(), patients.stream().map(Patient::getPatientId).toList());
+
+        doctorService.getDoctorById(doctor.getDoctorId()); // warms the doctors region
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        Doctor cached = doctorService.getDoctorById(doctor.getDoctorId());
+
+        assertEquals(200, cached.getPatients().size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "The doctor and its patients should come in one join.");
+    }
+
+    @Test
+    public void testGetAllDoctorsDoesNotLoadOffices() {
+        OfficeService officeService = new OfficeService(new OfficeRepositoryImpl(sessionFactory));
+        for (int i = 0; i < 10; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setFirstName("Doctor" + i);
+            doctor.setLastName("Smith");
+            doctorService.createDoctor(doctor);
+
+            Office office = new Office();
+            office.setLocation("Room " + i);
+            office.setDoctor(doctor);
+            officeService.createOffice(office);
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<Doctor> doctors = doctorService.getAllDoctors();
+
+        assertEquals(10, doctors.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Listing doctors should not select their offices.");
+
+        // Asked for inside a session, the office loads on demand
+        statistics.clear();
+        Office office = new UnitOfWork(sessionFactory).execute(
+                () -> doctorService.getDoctorById(doctors.get(3).getDoctorId()).getOffice());
+        assertEquals("Room 3", office.getLocation());
+    }
+
+    @Test
+    public void testGetDoctorsByIdsUsesSecondLevelCache() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setFirstName("Doctor" + i);
+            doctor.setLastName("Smith");
+            doctorService.createDoctor(doctor);
+            ids.add(0, doctor.getDoctorId());
+        }
+        PatientService patientService = new PatientService(new PatientRepositoryImpl(sessionFactory));
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient" + i);
+            patient.setLastName("Doe");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+        // Doctor5 gets 20 patients, Doctor4 gets 10
+        doctorService.addPatientsToDoctor(ids.get(0), patients.stream().map(Patient::getPatientId).toList());
+        doctorService.addPatientsToDoctor(ids.get(1), patients.subList(0, 10).stream().map(Patient::getPatientId).toList());
+        new CacheService(sessionFactory).evictAll();
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        MultiLoadResult<Doctor> result = doctorService.getDoctorsByIds(ids);
+        assertTrue(result.isComplete());
+        assertEquals("Doctor5", result.found().get(0).getFirstName());
+        assertEquals(20, result.found().get(0).getPatients().size());
+        assertEquals(26, statistics.getEntityLoadCount(), "Six doctors and their 20 distinct patients.");
+        // Four IDs per query at most, with the patients joined in
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        // Doctors now come from the cache; their patients are joined in one query per batch, not one per patient
+        statistics.clear();
+        result = doctorService.getDoctorsByIds(ids);
+        assertEquals(6, result.found().size());
+        assertEquals(6, statistics.getSecondLevelCacheHitCount(), "Each doctor should come from the cache.");
+        assertEquals(20, result.found().get(0).getPatients().size());
+        assertEquals(10, result.found().get(1).getPatients().size());
+        assertTrue(result.found().stream().allMatch(doctor -> Hibernate.isInitialized(doctor.getPatients())));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testLinkingPatientsDoesNotLoadTheirCollections() {
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+        Doctor colleague = new Doctor();
+        colleague.setFirstName("John");
+        colleague.setLastName("Brown");
+        doctorService.createDoctor(colleague);
+
+        PatientService patientService = new PatientService(new PatientRepositoryImpl(sessionFactory));
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient" + i);
+            patient.setLastName("Doe");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+        List<Integer> patientIds = patients.stream().map(Patient::getPatientId).toList();
+
+        doctorService.getDoctorById(colleague.getDoctorId()); // cached, to check the links leave it there
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        assertEquals(49, doctorService.addPatientsToDoctor(doctor.getDoctorId(), patientIds.subList(1, 50)));
+        assertEquals(1, statistics.getPrepareStatementCount(), "Linking many patients should take one insert.");
+        assertEquals(0, doctorService.addPatientsToDoctor(doctor.getDoctorId(), patientIds.subList(1, 50)),
+                "Existing links should be skipped.");
+        assertTrue(sessionFactory.getCache().containsEntity(Doctor.class, colleague.getDoctorId()),
+                "Link statements are synchronized on Doctor_Patient only, so cached doctors stay.");
+
+        statistics.clear();
+        assertTrue(doctorService.addPatientToDoctor(doctor.getDoctorId(), patients.get(0)));
+        assertFalse(doctorService.addPatientToDoctor(doctor.getDoctorId(), patients.get(0)));
+        assertTrue(doctorService.removePatientFromDoctor(doctor.getDoctorId(), patients.get(1)));
+        assertFalse(doctorService.removePatientFromDoctor(doctor.getDoctorId(), patients.get(1)));
+        assertEquals(4, statistics.getPrepareStatementCount(), "Each call should be a single statement.");
+        assertEquals(0, statistics.getEntityLoadCount() + statistics.getCollectionLoadCount(),
+                "Neither side should be loaded to change a link.");
+
+        assertEquals(49, doctorService.getDoctorById(doctor.getDoctorId()).getPatients().size());
+        assertEquals(2, patientService.addDoctorsToPatient(patients.get(1).getPatientId(),
+                List.of(doctor.getDoctorId(), colleague.getDoctorId(), -1)),
+                "Links to both doctors should be added; unknown doctors are ignored.");
+        assertEquals(50, doctorService.getDoctorById(doctor.getDoctorId()).getPatients().size(),
+                "The patient set should reflect the change.");
+        assertEquals(49, doctorService.removePatientsFromDoctor(doctor.getDoctorId(), patientIds.subList(0, 49)));
+        assertEquals(1, doctorService.getDoctorById(doctor.getDoctorId()).getPatients().size());
+    }
+
+    @Test
+    public void testGetAllDoctorsStatementBudget() {
+        List<Doctor> created = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Doctor budgetDoctor = new Doctor();
+            budgetDoctor.setFirstName("Budget");
+            budgetDoctor.setLastName("Doctor " + i);
+            created.add(budgetDoctor);
+        }
+        doctorService.createDoctors(created);
+
+        List<Doctor> doctors = StatementBudget.assertAtMost(1, doctorService::getAllDoctors);
+        List<DoctorSummary> summaries = StatementBudget.assertAtMost(1, doctorService::getAllDoctorSummaries);
+
+        assertTrue(doctors.size() >= 1000, "All doctors should be listed.");
+        assertEquals(doctors.size(), summaries.size());
+    }
+
+    @Test
+    public void testDoctorSummariesAreProjectedWithoutLoadingEntities() {
+        for (int i = 0; i < 5; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setFirstName("Doctor" + i);
+            doctor.setLastName("Smith");
+            doctor.setSpecialty(i % 2 == 0 ? "Cardiology" : "Neurology");
+            doctorService.createDoctor(doctor);
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<DoctorSummary> summaries = doctorService.getAllDoctorSummaries();
+
+        assertEquals(5, summaries.size());
+        assertEquals("Doctor0", summaries.get(0).firstName());
+        assertEquals("Neurology", summaries.get(1).specialty());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount(), "A projection should not load any entity.");
+        assertEquals(0, statistics.getSecondLevelCachePutCount(), "A projection should not fill the entity cache.");
+
+        PageCursor<DoctorSummary> pages = doctorService.pageDoctorSummaries(3);
+        assertEquals(summaries.subList(0, 3), pages.next());
+        assertEquals(summaries.subList(3, 5), pages.next());
+    }
+
+    @Test
+    public void testConcurrentCallsShareThePooledConnections() throws Exception {
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        doctorService.createDoctor(doctor);
+
+        ConnectionPoolService poolService = new ConnectionPoolService(sessionFactory);
+        poolService.clearStatistics();
+
+        int threads = 8;
+        int callsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                calls.add(executor.submit(() -> {
+                    for (int j = 0; j < callsPerThread; j++) {
+                        assertEquals(1, doctorService.getAllDoctors().size());
+                    }
+                }));
+            }
+            for (Future<?> call : calls) {
+                call.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ConnectionPoolService.PoolStatistics statistics = poolService.getStatistics();
+        assertEquals(threads * callsPerThread, statistics.acquisitions());
+        assertEquals(0, statistics.timeouts());
+        assertTrue(statistics.total() <= 16, "The pool should not grow past its maximum size.");
+        assertTrue(statistics.active() <= 1, "Only the test's own session should still hold a connection.");
+        assertTrue(statistics.p99WaitMicros() <= statistics.maxWaitMicros());
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"Cardiology", "Neurology", "Dermatology"})
     public void testCreateDoctorWithDifferentSpecialties(String specialty) {
@@ -1,15 +1,39 @@
 package org.rma.service;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.opentest4j.AssertionFailedError;
+import org.rma.model.Appointment;
+import org.rma.model.Doctor;
 import org.rma.model.Patient;
+import org.rma.model.PatientSummary;
+import org.rma.repository.AppointmentRepositoryImpl;
+import org.rma.repository.DoctorRepositoryImpl;
+import org.rma.repository.MultiLoadResult;
 import org.rma.repository.PatientRepositoryImpl;
+import org.rma.repository.UnitOfWork;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -49,7 +73,7 @@ public class PatientServiceTest {
         Patient patient = new Patient();
         patient.setFirstName("John");
         patient.setLastName("Doe");
-        patient.setDateOfBirth("1980-01-01");
+        patient.setDateOfBirth(LocalDate.parse("1980-01-01"));
         patient.setEmail("john.doe@example.com");
         patient.setPhoneNumber("1234567890");
 
@@ -66,7 +90,7 @@ public class PatientServiceTest {
         Patient patient = new Patient();
         patient.setFirstName("Alice");
         patient.setLastName("Smith");
-        patient.setDateOfBirth("1995-06-15");
+        patient.setDateOfBirth(LocalDate.parse("1995-06-15"));
         patient.setEmail("alice.smith@example.com");
         patient.setPhoneNumber("5551234567");
         patientService.createPatient(patient);
@@ -83,7 +107,7 @@ public class PatientServiceTest {
         Patient patient1 = new Patient();
         patient1.setFirstName("Michael");
         patient1.setLastName("Brown");
-        patient1.setDateOfBirth("1987-03-22");
+        patient1.setDateOfBirth(LocalDate.parse("1987-03-22"));
         patient1.setEmail("michael.brown@example.com");
         patient1.setPhoneNumber("9876543210");
         patientService.createPatient(patient1);
@@ -91,7 +115,7 @@ public class PatientServiceTest {
         Patient patient2 = new Patient();
         patient2.setFirstName("Sophia");
         patient2.setLastName("Johnson");
-        patient2.setDateOfBirth("1992-08-30");
+        patient2.setDateOfBirth(LocalDate.parse("1992-08-30"));
         patient2.setEmail("sophia.johnson@example.com");
         patient2.setPhoneNumber("8765432109");
         patientService.createPatient(patient2);
@@ -109,7 +133,7 @@ public class PatientServiceTest {
         Patient patient = new Patient();
         patient.setFirstName("Chris");
         patient.setLastName("Evans");
-        patient.setDateOfBirth("1990-07-19");
+        patient.setDateOfBirth(LocalDate.parse("1990-07-19"));
         patient.setEmail("chris.evans@example.com");
         patient.setPhoneNumber("1239876543");
         patientService.createPatient(patient);
@@ -129,7 +153,7 @@ public class PatientServiceTest {
         Patient patient = new Patient();
         patient.setFirstName("Emma");
         patient.setLastName("Watson");
-        patient.setDateOfBirth("1989-04-15");
+        patient.setDateOfBirth(LocalDate.parse("1989-04-15"));
         patient.setEmail("emma.watson@example.com");
         patient.setPhoneNumber("9998887777");
         patientService.createPatient(patient);
@@ -142,6 +166,380 @@ public class PatientServiceTest {
         assertNull(deletedPatient, "Patient should be deleted.");
     }
 
+    @Test
+    public void testCreatePatientsInOneBatchedTransaction() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Bulk" + i);
+            patient.setLastName("Patient");
+            patient.setEmail("bulk" + i + "@example.com");
+            patients.add(patient);
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        patientService.createPatients(patients);
+
+        // One session and one commit for the whole set instead of one per patient
+        assertEquals(10_000, statistics.getEntityInsertCount(), "All patients should be inserted.");
+        assertEquals(1, statistics.getSessionOpenCount(), "Bulk create should open a single session.");
+        assertEquals(1, statistics.getSuccessfulTransactionCount(), "Bulk create should commit once.");
+        assertTrue(patients.get(9_999).getPatientId() > 0, "Every patient should receive an ID.");
+        // Pooled IDs let inserts batch: about one insert batch and one ID block per 50 rows, not 10k inserts
+        assertTrue(statistics.getPrepareStatementCount() <= 500,
+                "Inserts should be batched, but " + statistics.getPrepareStatementCount() + " statements were prepared.");
+    }
+
+    @Test
+    public void testPagePatients() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Paged" + i);
+            patient.setLastName("Patient");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+
+        PageCursor<Patient> pages = patientService.pagePatients(10);
+        List<Integer> seenIds = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        while (pages.hasNext()) {
+            List<Patient> page = pages.next();
+            pageSizes.add(page.size());
+            page.forEach(p -> seenIds.add(p.getPatientId()));
+        }
+
+        assertEquals(List.of(10, 10, 5), pageSizes, "25 patients should come back as pages of 10, 10 and 5.");
+        assertEquals(25, seenIds.stream().distinct().count(), "No patient should appear on two pages.");
+        assertEquals(seenIds.stream().sorted().toList(), seenIds, "Pages should be in ID order.");
+        assertTrue(patientService.getPatientPage(pages.getLastId(), 10).isEmpty(), "Nothing should follow the last page.");
+    }
+
+    @Test
+    public void testGetPatientsByIdsKeepsOrderAndReportsMissing() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient" + i);
+            patient.setLastName("Doe");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+        Doctor doctor = new Doctor();
+        doctor.setFirstName("Jane");
+        doctor.setLastName("Smith");
+        DoctorService doctorService = new DoctorService(new DoctorRepositoryImpl(sessionFactory));
+        doctorService.createDoctor(doctor);
+        doctorService.addPatientToDoctor(doctor.getDoctorId(), patients.get(7));
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 9; i >= 0; i -= 2) {
+            ids.add(patients.get(i).getPatientId());
+        }
+        ids.add(2, -1);
+        ids.add(patients.get(9).getPatientId());
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        MultiLoadResult<Patient> result = patientService.getPatientsByIds(ids);
+
+        assertEquals(List.of("Patient9", "Patient7", "Patient5", "Patient3", "Patient1"),
+                result.found().stream().map(Patient::getFirstName).toList(), "Patients should come back in the order asked for, once each.");
+        assertEquals(List.of(-1), result.missingIds());
+        assertFalse(result.isComplete());
+        assertEquals(1, result.found().get(1).getDoctors().size(), "Doctors should be loaded with the patients.");
+        // Six distinct IDs at four per query, with the doctors joined in
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindAllFetchModesReadFewerRowsInSeparateQueries() {
+        // 300 patients with 3 doctors and 4 appointments each, spread over 20 doctors
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Bench" + i);
+            patient.setLastName("Patient");
+            patients.add(patient);
+        }
+        List<Doctor> doctors = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setFirstName("Bench" + i);
+            doctor.setLastName("Doctor");
+            doctors.add(doctor);
+        }
+        patientService.createPatients(patients);
+        DoctorService doctorService = new DoctorService(new DoctorRepositoryImpl(sessionFactory));
+        doctorService.createDoctors(doctors);
+        for (int i = 0; i < patients.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                doctors.get((i + j * 7) % doctors.size()).getPatients().add(patients.get(i));
+            }
+        }
+        doctors.forEach(doctorService::updateDoctor);
+
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < patients.size(); i++) {
+            for (int j = 0; j < 4; j++) {
+                Appointment appointment = new Appointment();
+                appointment.setPatient(patients.get(i));
+                appointment.setDoctor(doctors.get((i + (j % 3) * 7) % doctors.size()));
+                appointment.setAppointmentDate(LocalDate.of(2024, 1, j + 1));
+                appointments.add(appointment);
+            }
+        }
+        new AppointmentRepositoryImpl(sessionFactory).createAll(appointments);
+
+        long joinedRows = countRows("select count(*) from Patients p " +
+                "left join Appointments a on a.PatientID = p.PatientID " +
+                "left join Doctor_Patient dp on dp.PatientID = p.PatientID");
+        long multiStepRows = countRows("select count(*) from Patients")
+                + countRows("select count(*) from Patients p left join Appointments a on a.PatientID = p.PatientID")
+                + countRows("select count(*) from Patients p left join Doctor_Patient dp on dp.PatientID = p.PatientID");
+
+        PatientRepositoryImpl repository = new PatientRepositoryImpl(sessionFactory);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<Patient> joined = repository.findAll(PatientRepositoryImpl.FetchMode.JOINED);
+        assertEquals(1, statistics.getPrepareStatementCount(), "The joined fetch should be a single query.");
+        statistics.clear();
+        List<Patient> multiStep = repository.findAll(PatientRepositoryImpl.FetchMode.MULTI_STEP);
+        assertEquals(3, statistics.getPrepareStatementCount(), "Patients, then appointments and doctors with one query each.");
+
+        assertEquals(300, multiStep.size(), "Every patient should be returned once.");
+        assertEquals(joined.size(), multiStep.size(), "Both fetch modes should return the same patients.");
+        Patient sample = multiStep.get(0);
+        assertEquals(4, sample.getAppointments().size(), "Appointments should be initialized.");
+        assertEquals(3, sample.getDoctors().size(), "Doctors should be initialized.");
+        assertTrue(multiStepRows < joinedRows, "The multi-step fetch should read fewer rows than the joined one.");
+    }
+
+    @Test
+    public void testFlushWritesOnlyTrackedPatients() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Managed" + i);
+            patient.setLastName("Patient");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+
+        List<Patient> managed = session.createQuery("from Patient", Patient.class).list();
+        assertEquals(5_000, managed.size());
+        assertTrue(managed.get(0) instanceof SelfDirtinessTracker, "Entities should be bytecode-enhanced.");
+
+        Statistics statistics = sessionFactory.getStatistics();
+        for (int run = 0; run < 3; run++) {
+            for (int i = 0; i < 10; i++) {
+                managed.get(i * 500).setPhoneNumber("555-" + run + i);
+            }
+            assertTrue(List.of(((SelfDirtinessTracker) managed.get(0)).$$_hibernate_getDirtyAttributes()).contains("phoneNumber"),
+                    "The change should be recorded by the entity itself.");
+            statistics.clear();
+            session.flush();
+
+            // Only the tracked entities are written; the rest are skipped without a snapshot comparison
+            assertEquals(10, statistics.getEntityUpdateCount(), "Only the modified patients should be updated.");
+        }
+    }
+
+    @Test
+    public void testFindAllLoadsPatientsReadOnly() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Listed" + i);
+            patient.setLastName("Patient");
+            patients.add(patient);
+        }
+        patientService.createPatients(patients);
+
+        // Records, for each patient loaded, whether its session holds it read-only and without a snapshot
+        List<Boolean> readOnly = new ArrayList<>();
+        List<Boolean> snapshotted = new ArrayList<>();
+        sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry().getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> {
+                    if (event.getEntity() instanceof Patient) {
+                        EntityEntry entry = event.getSession().getPersistenceContextInternal().getEntry(event.getEntity());
+                        readOnly.add(entry.isReadOnly());
+                        snapshotted.add(entry.getLoadedState() != null);
+                    }
+                });
+
+        PatientRepositoryImpl repository = new PatientRepositoryImpl(sessionFactory);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        assertEquals(50, repository.findAll().size());
+        assertEquals(50, readOnly.size());
+        assertTrue(readOnly.stream().allMatch(Boolean::booleanValue), "findAll should load patients read-only.");
+        assertFalse(snapshotted.contains(true), "Read-only patients should keep no dirty-checking snapshot.");
+        assertEquals(0, statistics.getFlushCount(), "A read should never flush.");
+
+        // Control: the same call joining a unit of work loads read-write patients, snapshots and all
+        readOnly.clear();
+        snapshotted.clear();
+        new UnitOfWork(sessionFactory).execute(repository::findAll);
+        assertEquals(50, readOnly.size());
+        assertFalse(readOnly.contains(true));
+        assertTrue(snapshotted.stream().allMatch(Boolean::booleanValue));
+    }
+
+    @Test
+    public void testMetricsTimeServiceAndRepositoryCalls() {
+        MetricsService metricsService = new MetricsService(sessionFactory);
+        PatientRepositoryImpl timedRepository = metricsService.create(PatientRepositoryImpl.class, sessionFactory);
+        PatientService timedService = metricsService.create(PatientService.class, timedRepository);
+
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        timedService.createPatient(patient);
+        metricsService.clearStatistics();
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(timedService.getPatientById(patient.getPatientId()));
+        }
+        assertThrows(NullPointerException.class, () -> timedService.createPatients(null));
+
+        MetricsService.Snapshot snapshot = metricsService.getSnapshot();
+        MetricsService.MethodStatistics serviceCall = method(snapshot, "PatientService.getPatientById(int)");
+        MetricsService.MethodStatistics repositoryCall = method(snapshot, "PatientRepositoryImpl.findById(int)");
+        assertEquals(3, serviceCall.calls());
+        assertEquals(0, serviceCall.errors());
+        assertEquals(3, repositoryCall.calls());
+        assertTrue(serviceCall.maxMicros() >= serviceCall.p50Micros() && serviceCall.p50Micros() > 0);
+        assertEquals(0, method(snapshot, "PatientService.createPatient(Patient)").calls(), "Cleared before the reads.");
+        assertEquals(1, method(snapshot, "PatientService.createPatients(Collection)").errors());
+        assertEquals(3, snapshot.hibernate().queries());
+        assertTrue(snapshot.dump().contains("PatientRepositoryImpl.findById(int)"));
+    }
+
+    @Test
+    public void testFlightRecorderEventsNameTheOperation() throws Exception {
+        MetricsService metricsService = new MetricsService(sessionFactory);
+        PatientService timedService = metricsService.create(PatientService.class,
+                metricsService.create(PatientRepositoryImpl.class, sessionFactory));
+        Patient patient = new Patient();
+        patient.setFirstName("John");
+        patient.setLastName("Doe");
+        timedService.createPatient(patient);
+
+        List<RecordedEvent> events;
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream sqlLog = new ByteArrayOutputStream();
+        try (Recording recording = new Recording()) {
+            recording.enable("org.rma.Operation");
+            recording.enable("org.rma.Session");
+            recording.enable("org.rma.Transaction");
+            recording.start();
+            System.setOut(new PrintStream(sqlLog, true));
+            try {
+                timedService.getPatientById(patient.getPatientId());
+                patient.setLastName("Roe");
+                timedService.updatePatient(patient);
+            } finally {
+                System.setOut(stdout);
+            }
+            recording.stop();
+            Path file = Files.createTempFile("operations", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        RecordedEvent find = events.stream()
+                .filter(e -> e.getEventType().getName().equals("org.rma.Operation"))
+                .filter(e -> "PatientRepositoryImpl.findById".equals(e.getString("method")))
+                .findFirst().orElseThrow();
+        assertEquals("PatientService.getPatientById", find.getString("businessOperation"));
+        assertEquals("Patient", find.getString("entityType"));
+        assertEquals(String.valueOf(patient.getPatientId()), find.getString("ids"));
+        assertEquals(1, find.getLong("rows"));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.rma.Session")
+                && "PatientService.getPatientById".equals(e.getString("operation")) && e.getBoolean("readOnly")));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.rma.Transaction")
+                && "PatientService.updatePatient".equals(e.getString("operation")) && e.getBoolean("committed")));
+
+        // SQL is tagged with the business operation, not the repository method
+        assertTrue(sqlLog.toString().contains("/* PatientService.getPatientById */ select"), sqlLog.toString());
+        assertTrue(sqlLog.toString().contains("/* PatientService.updatePatient */ update"), sqlLog.toString());
+
+        // Without a recording the SQL is left as it is, so it keeps one prepared statement cache entry
+        sqlLog.reset();
+        System.setOut(new PrintStream(sqlLog, true));
+        try {
+            timedService.getPatientById(patient.getPatientId());
+        } finally {
+            System.setOut(stdout);
+        }
+        assertTrue(sqlLog.toString().contains("select"), sqlLog.toString());
+        assertFalse(sqlLog.toString().contains("/* PatientService"), sqlLog.toString());
+    }
+
+    @Test
+    public void testStatementBudgetFlagsNPlusOne() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("Patient");
+            patient.setLastName("N" + i);
+            patientService.createPatient(patient);
+            ids.add(patient.getPatientId());
+        }
+
+        // One select per patient: within the statement budget, but the same shape five times
+        AssertionFailedError nPlusOne = assertThrows(AssertionFailedError.class, () ->
+                StatementBudget.assertAtMost(10, () -> ids.stream().map(patientService::getPatientById).toList()));
+        assertTrue(nPlusOne.getMessage().startsWith("Probable N+1"), nPlusOne.getMessage());
+
+        AssertionFailedError overBudget = assertThrows(AssertionFailedError.class, () ->
+                StatementBudget.assertAtMost(1, () -> ids.stream().limit(2).map(patientService::getPatientById).toList()));
+        assertTrue(overBudget.getMessage().startsWith("Expected at most 1 SQL statements but 2"), overBudget.getMessage());
+
+        // Multi-load reads 4 IDs per select in the tests: two selects, differing only in IN list length
+        MultiLoadResult<Patient> loaded = StatementBudget.assertAtMost(2, () -> patientService.getPatientsByIds(ids));
+        assertEquals(5, loaded.found().size());
+        assertEquals(StatementBudget.shape("select p.id from Patients p where p.id in (?, ?, ?, ?)"),
+                StatementBudget.shape("/* op */ select p.id from Patients p where p.id in (?)"));
+    }
+
+    private static MetricsService.MethodStatistics method(MetricsService.Snapshot snapshot, String name) {
+        return snapshot.methods().stream().filter(m -> m.method().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("No metrics for " + name));
+    }
+
+    private long countRows(String sql) {
+        return ((Number) session.createNativeQuery(sql, Long.class).uniqueResult()).longValue();
+    }
+
+    @Test
+    public void testGetAllPatientsStatementBudget() {
+        List<Patient> created = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Patient budgetPatient = new Patient();
+            budgetPatient.setFirstName("Budget");
+            budgetPatient.setLastName("Patient " + i);
+            created.add(budgetPatient);
+        }
+        patientService.createPatients(created);
+
+        List<PatientSummary> summaries = StatementBudget.assertAtMost(1, patientService::getAllPatientSummaries);
+        // The patients, then their appointments and doctors with one query each per 1000 patients
+        int chunks = (summaries.size() + 999) / 1000;
+        List<Patient> patients = StatementBudget.assertAtMost(1 + 2 * chunks, patientService::getAllPatients);
+
+        assertTrue(patients.size() >= 1000, "All patients should be listed.");
+        assertEquals(summaries.size(), patients.size());
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"john.doe@example.com", "jane.doe@example.com", "alice.smith@example.com"})
     public void testCreatePatientWithDifferentEmails(String email) {
@@ -149,7 +547,7 @@ public class PatientServiceTest {
         patient.setFirstName("Test");
         patient.setLastName("User");
         patient.setEmail(email);
-        patient.setDateOfBirth("1995-01-01");
+        patient.setDateOfBirth(LocalDate.parse("1995-01-01"));
         patient.setPhoneNumber("1234567890");
 
         patientService.createPatient(patient);
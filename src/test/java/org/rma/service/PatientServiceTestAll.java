@@ -10,6 +10,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.rma.model.Patient;
 import org.rma.repository.PatientRepositoryImpl;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -56,7 +57,7 @@ public class PatientServiceTestAll {
         patient = new Patient();
         patient.setFirstName("Alice");
         patient.setLastName("Johnson");
-        patient.setDateOfBirth("1990-05-10");
+        patient.setDateOfBirth(LocalDate.parse("1990-05-10"));
         patient.setEmail("alice.johnson@example.com");
         patient.setPhoneNumber("1234567890");
 
@@ -115,7 +116,7 @@ public class PatientServiceTestAll {
         Patient patient1 = new Patient();
         patient1.setFirstName("Liam");
         patient1.setLastName("Brown");
-        patient1.setDateOfBirth("1985-07-20");
+        patient1.setDateOfBirth(LocalDate.parse("1985-07-20"));
         patient1.setEmail("liam.brown@example.com");
         patient1.setPhoneNumber("999-999-9999");
         patientService.createPatient(patient1);
@@ -123,7 +124,7 @@ public class PatientServiceTestAll {
         Patient patient2 = new Patient();
         patient2.setFirstName("Sophia");
         patient2.setLastName("Miller");
-        patient2.setDateOfBirth("1995-03-15");
+        patient2.setDateOfBirth(LocalDate.parse("1995-03-15"));
         patient2.setEmail("sophia.miller@example.com");
         patient2.setPhoneNumber("888-888-8888");
         patientService.createPatient(patient2);
@@ -145,7 +146,7 @@ public class PatientServiceTestAll {
         Patient patient = new Patient();
         patient.setFirstName(firstName);
         patient.setLastName("Doe");
-        patient.setDateOfBirth("1995-08-25");
+        patient.setDateOfBirth(LocalDate.parse("1995-08-25"));
         patient.setEmail(firstName.toLowerCase() + ".doe@example.com");
         patient.setPhoneNumber("888-888-8888");
 
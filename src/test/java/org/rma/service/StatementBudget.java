@@ -0,0 +1,122 @@
+package org.rma.service;
+
+import org.rma.repository.OperationContext;
+import org.rma.repository.OperationStatementInspector;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Counts the SQL statements a service call prepares, to catch fetch regressions (another EAGER
+ * association, a lazy association touched in a loop) before they reach production latency.
+ *
+ * hibernate-test.cfg.xml installs this class as the statement inspector. It tags SQL like
+ * {@link OperationStatementInspector} and, while {@link #assertAtMost} runs, records every
+ * statement the calling thread prepares:
+ *
+ * <pre>
+ * List&lt;Appointment&gt; all = StatementBudget.assertAtMost(2, appointmentService::getAllAppointments);
+ * </pre>
+ *
+ * The call fails if it prepares more statements than its budget, or if it runs more than
+ * {@value #DEFAULT_REPEAT_LIMIT} selects of the same shape (the same SQL apart from literals
+ * and the length of IN lists), which is the usual sign of an N+1 fetch. A batched insert
+ * counts once, like in Hibernate's prepared statement count.
+ */
+public class StatementBudget extends OperationStatementInspector {
+
+    public static final int DEFAULT_REPEAT_LIMIT = 3;
+
+    /** A prepared statement and the operation (see {@link OperationContext}) that sent it, if any. */
+    public record Statement(String operation, String sql) {
+        @Override
+        public String toString() {
+            return operation == null ? sql : operation + ": " + sql;
+        }
+    }
+
+    private static final ThreadLocal<List<Statement>> RECORDED = new ThreadLocal<>();
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Override
+    public String inspect(String sql) {
+        List<Statement> recorded = RECORDED.get();
+        if (recorded != null) {
+            recorded.add(new Statement(OperationContext.current(), sql));
+        }
+        return super.inspect(sql);
+    }
+
+    /** Runs {@code work} and returns its result, failing if it breaks the budget or looks like an N+1. */
+    public static <T> T assertAtMost(int maxStatements, Supplier<T> work) {
+        return assertAtMost(maxStatements, DEFAULT_REPEAT_LIMIT, work);
+    }
+
+    /** As {@link #assertAtMost(int, Supplier)}, allowing {@code repeatLimit} selects of one shape. */
+    public static <T> T assertAtMost(int maxStatements, int repeatLimit, Supplier<T> work) {
+        List<Statement> statements = new ArrayList<>();
+        T result = record(statements, work);
+        if (statements.size() > maxStatements) {
+            fail("Expected at most " + maxStatements + " SQL statements but " + statements.size() + " were prepared:\n"
+                    + statements.stream().map(Statement::toString).collect(Collectors.joining("\n")));
+        }
+        Map<String, Integer> selects = new LinkedHashMap<>();
+        for (Statement statement : statements) {
+            String shape = shape(statement.sql());
+            if (shape.startsWith("select")) {
+                selects.merge(shape, 1, Integer::sum);
+            }
+        }
+        String repeated = selects.entrySet().stream()
+                .filter(e -> e.getValue() > repeatLimit)
+                .map(e -> e.getValue() + " x " + e.getKey())
+                .collect(Collectors.joining("\n"));
+        if (!repeated.isEmpty()) {
+            fail("Probable N+1: more than " + repeatLimit + " selects of the same shape:\n" + repeated);
+        }
+        return result;
+    }
+
+    /** The statements {@code work} prepares on the calling thread, without checking them. */
+    public static List<Statement> statementsOf(Runnable work) {
+        List<Statement> statements = new ArrayList<>();
+        record(statements, () -> {
+            work.run();
+            return null;
+        });
+        return statements;
+    }
+
+    private static <T> T record(List<Statement> statements, Supplier<T> work) {
+        if (RECORDED.get() != null) {
+            throw new IllegalStateException("Statement budgets cannot be nested.");
+        }
+        RECORDED.set(statements);
+        try {
+            return work.get();
+        } finally {
+            RECORDED.remove();
+        }
+    }
+
+    /** The SQL without comments, with literals and IN lists reduced to one ?. */
+    static String shape(String sql) {
+        sql = COMMENT.matcher(sql).replaceAll(" ");
+        sql = STRING_LITERAL.matcher(sql).replaceAll("?");
+        sql = NUMBER_LITERAL.matcher(sql).replaceAll("?");
+        sql = WHITESPACE.matcher(sql).replaceAll(" ").trim().toLowerCase();
+        return IN_LIST.matcher(sql).replaceAll("in (?)");
+    }
+}